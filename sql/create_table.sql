@@ -68,4 +68,30 @@ create table if not exists team_user
     createTime datetime default CURRENT_TIMESTAMP null comment '创建时间',
     updateTime datetime default CURRENT_TIMESTAMP null on update CURRENT_TIMESTAMP comment '更新时间',
     isDelete   tinyint  default 0                 not null comment '是否删除'
-) comment '用户队伍关系';
\ No newline at end of file
+) comment '用户队伍关系';
+
+# 标签名唯一，便于按名称查找和批量插入标签
+alter table tag
+    add unique index uniq_tagName (tagName);
+
+#新建用户标签关系表（由user.tags回填，按标签查询用户时走索引）
+create table if not exists user_tag
+(
+    id         bigint auto_increment comment 'id' primary key,
+    userId     bigint                             not null comment '用户id',
+    tagId      bigint                             not null comment '标签id',
+    createTime datetime default CURRENT_TIMESTAMP null comment '创建时间',
+    unique index uniq_userId_tagId (userId, tagId),
+    index idx_tagId_userId (tagId, userId)
+) comment '用户标签关系';
+
+# 按队伍统计人数、按用户统计加入队伍数时走索引
+alter table team_user
+    add index idx_teamId_userId (teamId, userId),
+    add index idx_userId (userId);
+
+# 账号和星球编号唯一，注册时直接插入，由唯一索引拦截重复（已有重复数据需要先清理）
+# 逻辑删除的用户也占用账号和星球编号
+alter table user
+    add unique index uniq_userAccount (userAccount),
+    add unique index uniq_planetCode (planetCode);
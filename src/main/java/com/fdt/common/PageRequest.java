@@ -19,4 +19,14 @@ public class PageRequest implements Serializable {
      * 当前是第几页
      */
     protected int pageNum;
+
+    /**
+     * 游标分页：上一页返回的游标（上一页最后一条数据的id），为空表示第一页
+     */
+    protected Long afterId;
+
+    /**
+     * 游标分页是否需要查询总数，不需要时不执行count
+     */
+    protected boolean needTotal;
 }
@@ -0,0 +1,39 @@
+package com.fdt.config;
+
+import io.lettuce.core.metrics.MicrometerCommandLatencyRecorder;
+import io.lettuce.core.metrics.MicrometerOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 监控指标配置
+ * 指标通过管理端口的 /actuator/prometheus 暴露（见 management.server，不走业务端口和 /api 前缀）
+ *
+ * @author fdt
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * 让 @Timed 注解的方法记录耗时
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * 替换默认的lettuce客户端资源，记录每种redis命令的耗时（lettuce.command.completion）
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources lettuceClientResources(MeterRegistry meterRegistry) {
+        MicrometerOptions options = MicrometerOptions.builder().histogram(true).build();
+        return DefaultClientResources.builder()
+                .commandLatencyRecorder(new MicrometerCommandLatencyRecorder(meterRegistry, options))
+                .build();
+    }
+}
@@ -21,4 +21,35 @@ public interface UserContant {
      管理员权限
      */
     int ADMIN_ROLE = 1;
+
+    /**
+     * 不能登录的密码，任何密码加密后（32位十六进制）都不会等于它
+     * 批量导入的用户没有初始密码，设置密码后才能登录
+     */
+    String UNUSABLE_PASSWORD = "!";
+
+    // ------ 查询 ---------
+    /**
+     * 脱敏后的用户列，和 getSafetyUser 保留的字段一致，不查密码、个人简介等
+     * 列表接口用 queryWrapper.select(SAFE_USER_COLUMNS) 只查这些列，查出来的就是脱敏用户
+     * 修改时同步修改 UserMapper.xml 中的 Safe_Column_List
+     */
+    String[] SAFE_USER_COLUMNS = {"id", "username", "userAccount", "avatarUrl", "gender", "phone", "email",
+            "tags", "userRole", "status", "createTime", "planetCode"};
+
+    // ------ 缓存 ---------
+    /**
+     * 推荐用户缓存的键，参数依次为 用户id、页码、每页条数，接口和预热任务共用
+     */
+    String RECOMMEND_CACHE_KEY = "yupao:user:recommend:%s:%s:%s";
+
+    /**
+     * 标签关系同步失败、等待重试的用户id集合，由标签回填任务处理
+     */
+    String USER_TAG_RETRY_KEY = "yupao:usertag:retry";
+
+    /**
+     * 标签回填任务完整扫描过一遍用户后设置，之后用户标签关系表是完整的，可以用来按标签查询用户
+     */
+    String USER_TAG_BACKFILLED_KEY = "yupao:usertag:backfill:done";
 }
@@ -6,6 +6,7 @@ import com.fdt.common.BaseResponse;
 import com.fdt.common.DeleteRequest;
 import com.fdt.common.ErrorCode;
 import com.fdt.common.ResultUtils;
+import com.fdt.convert.TeamConvert;
 import com.fdt.exception.BusinessException;
 import com.fdt.model.domain.Team;
 import com.fdt.model.domain.TeamUser;
@@ -15,16 +16,20 @@ import com.fdt.model.request.TeamAddRequest;
 import com.fdt.model.request.TeamJoinRequest;
 import com.fdt.model.request.TeamQuitRequest;
 import com.fdt.model.request.TeamUpdateRequest;
+import com.fdt.model.vo.CursorPage;
 import com.fdt.model.vo.TeamUserVO;
 import com.fdt.service.TeamService;
 import com.fdt.service.TeamUserService;
 import com.fdt.service.UserService;
+import com.fdt.utils.ExportWriter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -54,8 +59,7 @@ public class TeamController {
         if (teamAddRequest == null){
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        Team team = new Team();
-        BeanUtils.copyProperties(teamAddRequest,team);
+        Team team = TeamConvert.INSTANCE.toTeam(teamAddRequest);
         long teamId = teamService.addTeam(team, request);
         return ResultUtils.success(teamId);
     }
@@ -127,14 +131,31 @@ public class TeamController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
 
-        Team team = new Team();
-        BeanUtils.copyProperties(teamQuery,team);
+        Team team = TeamConvert.INSTANCE.toTeam(teamQuery);
         Page<Team> page = new Page<>(teamQuery.getPageNum(),teamQuery.getPageSize());
         QueryWrapper<Team> queryWrapper = new QueryWrapper<>(team);
         Page<Team> resultPage = teamService.page(page, queryWrapper);
         return ResultUtils.success(resultPage);
     }
 
+    /**
+     * 游标分页查询队伍（无限滚动），翻页深度不影响耗时
+     * @param teamQuery 队伍查询条件，afterId为上一页返回的nextCursor，needTotal为是否查询总数
+     * @param request 请求
+     * @return CursorPage<Team>
+     */
+    @GetMapping("/list/page/cursor")
+    public BaseResponse<CursorPage<Team>> listTeamsByCursor(TeamQuery teamQuery, HttpServletRequest request){
+        if (teamQuery == null){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        if (teamQuery.getPageSize() <= 0 || teamQuery.getPageSize() > 50){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "每页条数不合法");
+        }
+        boolean isAdmin = userService.isAdmin(request);
+        return ResultUtils.success(teamService.listTeamsByCursor(teamQuery, isAdmin));
+    }
+
     /**
      * 获取我创建的队伍
      * @param teamQuery 队伍
@@ -206,5 +227,29 @@ public class TeamController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 流式导出队伍（NDJSON或CSV），边查边写，导出多少行内存占用都不变
+     * @param format 导出格式，ndjson或csv
+     * @param request 请求
+     * @param response 响应
+     */
+    @GetMapping("/export")
+    public void exportTeams(@RequestParam(required = false, defaultValue = ExportWriter.FORMAT_NDJSON) String format,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!userService.isAdmin(request)){
+            throw new BusinessException(ErrorCode.NO_AUTH,"用户不是管理员");
+        }
+        if (!ExportWriter.isSupportedFormat(format)){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"不支持的导出格式");
+        }
+        response.setContentType(ExportWriter.getContentType(format));
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition", "attachment; filename=teams." + format);
+        long startTime = System.currentTimeMillis();
+        ExportWriter exportWriter = new ExportWriter(response.getWriter(), format, TeamService.TEAM_EXPORT_COLUMNS);
+        long rowCount = teamService.exportTeams(exportWriter);
+        log.info("导出队伍完毕，行数={}，耗时={}ms", rowCount, System.currentTimeMillis() - startTime);
+    }
+
 
 }
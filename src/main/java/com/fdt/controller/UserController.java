@@ -7,21 +7,31 @@ import com.fdt.common.BaseResponse;
 import com.fdt.common.ErrorCode;
 import com.fdt.common.ResultUtils;
 import com.fdt.exception.BusinessException;
+import com.fdt.job.UserImportJob;
+import com.fdt.job.UserTagBackfillJob;
+import com.fdt.manager.AuthTokenManager;
 import com.fdt.model.request.UserLoginRequest;
 import com.fdt.model.request.UserRegisterRequest;
 import com.fdt.service.UserService;
 import com.fdt.model.domain.User;
+import com.fdt.model.vo.CursorPage;
+import com.fdt.model.vo.UserImportProgressVO;
+import com.fdt.utils.ExportWriter;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
-import static com.fdt.contant.UserContant.USER_LOGIN_STATE;
+import static com.fdt.contant.UserContant.SAFE_USER_COLUMNS;
 
 /**
  * 用户接口
@@ -31,12 +41,22 @@ import static com.fdt.contant.UserContant.USER_LOGIN_STATE;
 
 @RestController
 @RequestMapping("/user")
+@Slf4j
 @CrossOrigin(origins = "http://localhost:5173",allowCredentials = "true")
 public class UserController {
 
     @Resource
     private UserService userService;
 
+    @Resource
+    private UserTagBackfillJob userTagBackfillJob;
+
+    @Resource
+    private UserImportJob userImportJob;
+
+    @Resource
+    private AuthTokenManager authTokenManager;
+
     /**
      * 用户注册
      * @param userRegisterRequest
@@ -66,7 +86,8 @@ public class UserController {
      * @return user
      */
     @PostMapping("/login")
-    public BaseResponse<User> userLogin(@RequestBody UserLoginRequest userLoginRequest, HttpServletRequest request){
+    public BaseResponse<User> userLogin(@RequestBody UserLoginRequest userLoginRequest, HttpServletRequest request,
+                                        HttpServletResponse response){
         if (userLoginRequest == null){
             return ResultUtils.error(ErrorCode.PARAMS_ERROR);
         }
@@ -77,30 +98,36 @@ public class UserController {
             return null;
         }
         User user=userService.userLogin(userAccount, userPassword,request);
+        //令牌模式下签发令牌，不创建session
+        if (user != null && authTokenManager.isEnabled()) {
+            authTokenManager.writeToken(response, authTokenManager.issue(user.getId(), user.getUserRole()));
+        }
         return ResultUtils.success(user);
     }
 
     @PostMapping("/logout")
-    public BaseResponse<Integer> userLogout(HttpServletRequest request){
+    public BaseResponse<Integer> userLogout(HttpServletRequest request, HttpServletResponse response){
         if (request == null){
             return null;
         }
         int result= userService.userLogout(request);
+        if (authTokenManager.isEnabled()) {
+            authTokenManager.clearToken(response);
+        }
         return ResultUtils.success(result);
     }
 
 
     @GetMapping("/current")
     public BaseResponse<User> getCurrentUser(HttpServletRequest request){
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
-        User currentUser =(User) userObj;
-        if (currentUser == null){
-            throw new BusinessException(ErrorCode.NOT_LOGIN);
-        }
+        User currentUser = userService.getLoginUser(request);
         long userId=currentUser.getId();
         // TODO 校验用户是否合法
-        User user=userService.getById(userId);
-        User safetyUser= userService.getSafetyUser(user);
+        //读用户资料缓存，不再每次查库
+        User safetyUser = userService.getSafetyUserById(userId);
+        if (safetyUser == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户信息为空");
+        }
         return ResultUtils.success(safetyUser);
     }
 
@@ -117,15 +144,13 @@ public class UserController {
            throw new BusinessException(ErrorCode.NO_AUTH,"用户不是管理员");
         }
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        //只查脱敏后的列，不查密码
+        queryWrapper.select(SAFE_USER_COLUMNS);
         if (StringUtils.isNotBlank(username)){
             queryWrapper.like("username", username);
         }
         List<User> userList = userService.list(queryWrapper);
-        List<User> list= userList.stream().map(user ->{
-            user.setUserPassword(null);
-            return userService.getSafetyUser(user);
-        }).collect(Collectors.toList());
-        return ResultUtils.success(list);
+        return ResultUtils.success(userList);
     }
 
     /**
@@ -159,24 +184,33 @@ public class UserController {
             // todo 用户未登录也可以进入首页，看到默认推荐
             throw new BusinessException(ErrorCode.NOT_LOGIN);
         }
-        String redisKey=String.format("yupaofdt:user:recommend:%s",loginUser.getId());
-        Page<User> userPage= (Page<User>) userService.getRedisCache(redisKey);
-        if (userPage != null){
-            //如果缓存中存在对应层级和对应id的数据，直接返回
-            return ResultUtils.success(userPage);
+        //缓存键包含页码和每页条数，限制每页条数，防止缓存键和查询无限增长
+        if (pageNum <= 0 || pageSize <= 0 || pageSize > 50){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        //分页查询，current指示当前页码，size指示每页显示的记录数
-        Page<User> userList = userService.page(new Page<>(pageNum,pageSize),queryWrapper);
-        List<User> list= userList.getRecords().stream().map(user ->{
-            user.setUserPassword(null);
-            return userService.getSafetyUser(user);
-        }).collect(Collectors.toList());
-        //先用stream流，对list进行遍历，对每个user进行脱敏操作，然后将结果设置回分页结果中
-        userList.setRecords(list);
-        //缓存时间固定可能导致缓存雪崩 todo 修改缓存过期时间
-        userService.setRedisCache(redisKey,userList,1000*60*10, TimeUnit.MILLISECONDS);
-        return ResultUtils.success(userList);
+        Page<User> userPage = userService.recommendUsers(pageNum, pageSize, loginUser.getId());
+        return ResultUtils.success(userPage);
+    }
+
+    /**
+     * 游标分页获取推荐用户（无限滚动），翻页深度不影响耗时
+     * @param afterId 上一页返回的nextCursor，为空表示第一页
+     * @param pageSize 每页条数
+     * @param needTotal 是否查询总数
+     * @return CursorPage<User>
+     */
+    @GetMapping("/recommend/cursor")
+    public BaseResponse<CursorPage<User>> recommendUsersByCursor(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false, defaultValue = "8") int pageSize,
+            @RequestParam(required = false, defaultValue = "false") boolean needTotal,
+            HttpServletRequest request){
+        //和推荐接口一样需要登录，未登录时抛出异常
+        userService.getLoginUser(request);
+        if (pageSize <= 0 || pageSize > 50){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        return ResultUtils.success(userService.recommendUsersByCursor(afterId, pageSize, needTotal));
     }
 
     /**
@@ -230,9 +264,97 @@ public class UserController {
         if (id<=0){
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"要删除的用户不存在");
         }
-        boolean result = userService.removeById(id);
+        boolean result = userService.deleteUser(id);
         return ResultUtils.success(result);
     }
 
+    /**
+     * 回填用户标签关系表（异步执行）
+     * @param reset 是否从头开始回填
+     * @param request 请求
+     * @return boolean
+     */
+    @PostMapping("/tag/backfill")
+    public BaseResponse<Boolean> backfillUserTags(@RequestParam(required = false, defaultValue = "false") boolean reset,
+                                                  HttpServletRequest request){
+        if (!userService.isAdmin(request)){
+            throw new BusinessException(ErrorCode.NO_AUTH,"用户不是管理员");
+        }
+        userTagBackfillJob.backfillAsync(reset);
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 批量导入用户（异步执行），按星球编号和账号去重
+     * @param file excel文件，列为星球编号、用户昵称、用户账号（可选）
+     * @param request 请求
+     * @return String 导入任务id，用于查询进度
+     */
+    @PostMapping("/import")
+    public BaseResponse<String> importUsers(@RequestPart("file") MultipartFile file, HttpServletRequest request) throws IOException {
+        if (!userService.isAdmin(request)){
+            throw new BusinessException(ErrorCode.NO_AUTH,"用户不是管理员");
+        }
+        if (file == null || file.isEmpty()){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"导入文件为空");
+        }
+        //上传的临时文件在请求结束后会被删除，先转存一份给导入线程
+        File importFile = File.createTempFile("user-import-", ".xlsx");
+        file.transferTo(importFile);
+        try {
+            return ResultUtils.success(userImportJob.importAsync(importFile, file.getOriginalFilename()));
+        } catch (RuntimeException e) {
+            importFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * 查询用户导入进度
+     * @param taskId 导入任务id
+     * @param request 请求
+     * @return UserImportProgressVO 已读取、已插入、重复、失败的行数和每秒插入行数
+     */
+    @GetMapping("/import/progress")
+    public BaseResponse<UserImportProgressVO> getImportProgress(String taskId, HttpServletRequest request){
+        if (!userService.isAdmin(request)){
+            throw new BusinessException(ErrorCode.NO_AUTH,"用户不是管理员");
+        }
+        if (StringUtils.isBlank(taskId)){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        UserImportProgressVO progressVO = userImportJob.getProgress(taskId);
+        if (progressVO == null){
+            throw new BusinessException(ErrorCode.NULL_ERROR,"导入任务不存在");
+        }
+        return ResultUtils.success(progressVO);
+    }
+
+    /**
+     * 流式导出用户（NDJSON或CSV），边查边写，导出多少行内存占用都不变
+     * @param username 用户昵称（模糊匹配），为空时导出全部
+     * @param format 导出格式，ndjson或csv
+     * @param request 请求
+     * @param response 响应
+     */
+    @GetMapping("/export")
+    public void exportUsers(String username,
+                            @RequestParam(required = false, defaultValue = ExportWriter.FORMAT_NDJSON) String format,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!userService.isAdmin(request)){
+            throw new BusinessException(ErrorCode.NO_AUTH,"用户不是管理员");
+        }
+        if (!ExportWriter.isSupportedFormat(format)){
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,"不支持的导出格式");
+        }
+        response.setContentType(ExportWriter.getContentType(format));
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition", "attachment; filename=users." + format);
+        long startTime = System.currentTimeMillis();
+        ExportWriter exportWriter = new ExportWriter(response.getWriter(), format, UserService.USER_EXPORT_COLUMNS);
+        long rowCount = userService.exportUsers(username, exportWriter);
+        log.info("导出用户完毕，行数={}，耗时={}ms", rowCount, System.currentTimeMillis() - startTime);
+    }
+
 
 }
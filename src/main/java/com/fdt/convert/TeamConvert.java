@@ -0,0 +1,55 @@
+package com.fdt.convert;
+
+import com.fdt.model.domain.Team;
+import com.fdt.model.dto.TeamQuery;
+import com.fdt.model.request.TeamAddRequest;
+import com.fdt.model.request.TeamUpdateRequest;
+import com.fdt.model.vo.TeamUserVO;
+import org.mapstruct.Mapper;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * 队伍对象转换
+ * 编译期由MapStruct生成实现类，直接调用getter/setter，代替运行时反射的 BeanUtils.copyProperties
+ * 和 BeanUtils 一样，来源中为null的属性也会写入目标
+ *
+ * @author fdt
+ */
+@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface TeamConvert {
+
+    TeamConvert INSTANCE = Mappers.getMapper(TeamConvert.class);
+
+    /**
+     * 队伍转为列表展示的队伍信息，创建人和是否已加入由调用方填充
+     *
+     * @param team 队伍
+     * @return TeamUserVO 队伍信息
+     */
+    TeamUserVO toTeamUserVO(Team team);
+
+    /**
+     * 创建队伍请求转为队伍
+     *
+     * @param teamAddRequest 创建队伍请求
+     * @return Team 队伍
+     */
+    Team toTeam(TeamAddRequest teamAddRequest);
+
+    /**
+     * 修改队伍请求转为队伍
+     *
+     * @param teamUpdateRequest 修改队伍请求
+     * @return Team 队伍，未修改的属性为null
+     */
+    Team toTeam(TeamUpdateRequest teamUpdateRequest);
+
+    /**
+     * 队伍查询条件转为队伍，用作查询实体
+     *
+     * @param teamQuery 队伍查询条件
+     * @return Team 队伍，没有的条件为null
+     */
+    Team toTeam(TeamQuery teamQuery);
+}
@@ -0,0 +1,39 @@
+package com.fdt.convert;
+
+import com.fdt.model.domain.User;
+import com.fdt.model.vo.UserVO;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+import org.mapstruct.factory.Mappers;
+
+/**
+ * 用户对象转换
+ * 编译期由MapStruct生成实现类，代替运行时反射的 BeanUtils.copyProperties
+ *
+ * @author fdt
+ */
+@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface UserConvert {
+
+    UserConvert INSTANCE = Mappers.getMapper(UserConvert.class);
+
+    /**
+     * 用户转为脱敏用户信息，status 对应 userStatus
+     *
+     * @param user 用户
+     * @return UserVO 脱敏用户信息
+     */
+    @Mapping(source = "status", target = "userStatus")
+    UserVO toUserVO(User user);
+
+    /**
+     * 脱敏用户信息转为脱敏用户，字段和 getSafetyUser 一致
+     *
+     * @param userVO 脱敏用户信息
+     * @return User 脱敏用户
+     */
+    @Mapping(source = "userStatus", target = "status")
+    @Mapping(target = "updateTime", ignore = true)
+    User toSafetyUser(UserVO userVO);
+}
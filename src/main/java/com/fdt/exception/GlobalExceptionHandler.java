@@ -3,10 +3,13 @@ package com.fdt.exception;
 import com.fdt.common.BaseResponse;
 import com.fdt.common.ErrorCode;
 import com.fdt.common.ResultUtils;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.annotation.Resource;
+
 /**
  * 全局异常处理器
  *
@@ -17,15 +20,20 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
     @ExceptionHandler(BusinessException.class)
     public BaseResponse businessExceptionHandler(BusinessException e){
         log.error("BusinessException"+e.getMessage(),e);
+        meterRegistry.counter("yupao.exceptions", "type", "business", "code", String.valueOf(e.code())).increment();
         return ResultUtils.error(e.code(),e.getMessage(),e.description());
     }
 
     @ExceptionHandler(RuntimeException.class)
     public BaseResponse runtimeExceptionHandler(RuntimeException e){
         log.error("RuntimeException"+e.getMessage(),e);
+        meterRegistry.counter("yupao.exceptions", "type", "runtime", "code", String.valueOf(ErrorCode.SYSTEM_ERROR.code())).increment();
         return ResultUtils.error(ErrorCode.SYSTEM_ERROR,e.getMessage(),"");
     }
 }
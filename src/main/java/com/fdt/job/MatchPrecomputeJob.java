@@ -0,0 +1,195 @@
+package com.fdt.job;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fdt.manager.ActiveUserManager;
+import com.fdt.manager.MatchResultManager;
+import com.fdt.manager.UserMatchEngine;
+import com.fdt.manager.UserTagIndexManager;
+import com.fdt.manager.UserTagSyncManager;
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+//定时任务，预计算活跃用户的匹配结果
+//1.用户标签变化后，只重新计算和他有相同标签（修改前或修改后）的活跃用户以及他自己
+//2.定期为还没有匹配结果（新活跃或结果已过期）的活跃用户补算
+@Component
+@Slf4j
+public class MatchPrecomputeJob {
+
+    private static final Type TAG_LIST_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+
+    //每次处理的标签变化事件数
+    private static final int TAG_CHANGE_BATCH_SIZE = 100;
+
+    //每次补算时检查的用户数
+    private static final int PRECOMPUTE_BATCH_SIZE = 500;
+
+    //每轮最多补算的用户数，防止一轮执行太久
+    private static final int MAX_PRECOMPUTE_PER_RUN = 10000;
+
+    private static final String PRECOMPUTE_LOCK_KEY = "yupao:user:match:precompute:lock";
+
+    //标签变化事件处理成功后才出队，同一时间只能有一个节点处理
+    private static final String TAG_CHANGE_LOCK_KEY = "yupao:user:match:tagchange:lock";
+
+    @Resource
+    private MatchResultManager matchResultManager;
+
+    @Resource
+    private UserMatchEngine userMatchEngine;
+
+    @Resource
+    private UserTagIndexManager userTagIndexManager;
+
+    @Resource
+    private ActiveUserManager activeUserManager;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private UserTagSyncManager userTagSyncManager;
+
+    @Resource
+    private UserMapper userMapper;
+
+    private final Gson gson = new Gson();
+
+    //每10秒处理一次标签变化
+    @Scheduled(fixedDelay = 10 * 1000L, initialDelay = 60 * 1000L)
+    public void doRefreshChangedUsers() {
+        if (!userMatchEngine.isReady() || !userTagIndexManager.isReady()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(TAG_CHANGE_LOCK_KEY);
+        try {
+            if (!lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            //处理完一批再取下一批，失败的一批留在队列中下次重试
+            int polled;
+            do {
+                polled = matchResultManager.pollTagChanges(TAG_CHANGE_BATCH_SIZE, this::refreshChangedUsers);
+            } while (polled > 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("refresh changed user match interrupted", e);
+        } catch (Exception e) {
+            log.error("refresh changed user match error", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    //每30分钟为没有匹配结果的活跃用户补算
+    @Scheduled(fixedDelay = 30 * 60 * 1000L, initialDelay = 5 * 60 * 1000L)
+    public void doPrecomputeActiveUsers() {
+        if (!userMatchEngine.isReady()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(PRECOMPUTE_LOCK_KEY);
+        try {
+            if (!lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            List<Long> activeUserIdList = activeUserManager.listActiveUserIds();
+            int computed = 0;
+            for (int from = 0; from < activeUserIdList.size() && computed < MAX_PRECOMPUTE_PER_RUN; from += PRECOMPUTE_BATCH_SIZE) {
+                List<Long> batchUserIdList = activeUserIdList.subList(from, Math.min(from + PRECOMPUTE_BATCH_SIZE, activeUserIdList.size()));
+                for (Long userId : matchResultManager.filterMissing(batchUserIdList)) {
+                    compute(userId);
+                    computed++;
+                }
+            }
+            log.info("活跃用户匹配结果补算完毕，活跃用户数={}，计算用户数={}，耗时={}ms",
+                    activeUserIdList.size(), computed, System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("precompute user match interrupted", e);
+        } catch (Exception e) {
+            log.error("precompute user match error", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void refreshChangedUsers(List<MatchResultManager.TagChangeEvent> eventList) {
+        //标签变化的用户自己，以及和他修改前后有相同标签的用户
+        Set<Long> affectedUserIdSet = new HashSet<>();
+        Set<String> tagSet = new HashSet<>();
+        for (MatchResultManager.TagChangeEvent event : eventList) {
+            affectedUserIdSet.add(event.getUserId());
+            tagSet.addAll(parseTags(event.getOldTags()));
+            tagSet.addAll(parseTags(event.getNewTags()));
+        }
+        //事件可能是其他节点产生的，通知丢失时本节点的索引和引擎还是旧标签，计算前从mysql加载这些用户的最新标签
+        reloadUserTags(affectedUserIdSet);
+        //只有活跃用户有预计算结果，热门标签的用户很多，先和活跃用户求交集
+        Set<Long> activeUserIdSet = new HashSet<>(activeUserManager.listActiveUserIds());
+        for (long userId : userTagIndexManager.searchUserIdsByAnyTag(tagSet)) {
+            if (activeUserIdSet.contains(userId)) {
+                affectedUserIdSet.add(userId);
+            }
+        }
+        for (Long userId : affectedUserIdSet) {
+            compute(userId);
+        }
+        log.info("标签变化重新计算匹配结果，事件数={}，计算用户数={}", eventList.size(), affectedUserIdSet.size());
+    }
+
+    /**
+     * 从mysql加载用户的最新标签并更新本节点的标签索引和匹配引擎，已删除的用户从中移除
+     * 不按事件中的标签更新，事件的处理顺序和修改顺序可能不一致
+     *
+     * @param userIdSet 用户id
+     */
+    private void reloadUserTags(Set<Long> userIdSet) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "tags");
+        queryWrapper.in("id", userIdSet);
+        Set<Long> missingUserIdSet = new HashSet<>(userIdSet);
+        for (User user : userMapper.selectList(queryWrapper)) {
+            userTagSyncManager.applyLocal(user.getId(), user.getTags());
+            missingUserIdSet.remove(user.getId());
+        }
+        for (Long userId : missingUserIdSet) {
+            userTagSyncManager.removeLocal(userId);
+        }
+    }
+
+    private void compute(long userId) {
+        matchResultManager.saveMatchResult(userId, userMatchEngine.matchUser(userId, MatchResultManager.PRECOMPUTE_NUM));
+    }
+
+    private List<String> parseTags(String tagsJson) {
+        if (StringUtils.isBlank(tagsJson)) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> tagList = gson.fromJson(tagsJson, TAG_LIST_TYPE);
+            return tagList == null ? Collections.emptyList() : tagList;
+        } catch (JsonSyntaxException e) {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -1,57 +1,142 @@
 package com.fdt.job;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fdt.manager.ActiveUserManager;
 import com.fdt.model.domain.User;
 import com.fdt.service.UserService;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
+import org.redisson.api.RAtomicLong;
 import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+
 import javax.annotation.Resource;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.fdt.contant.UserContant.RECOMMEND_CACHE_KEY;
 
 
-//定时任务，缓存推荐用户 todo 缓存重点用户的推荐用户
+//定时任务，为近期活跃的用户预热推荐用户缓存
+//活跃用户按 userId % 分片数 分片，各节点通过redis计数器领取分片，处理完一个再领下一个，不再用全局锁只让一个节点干活
 @Component
 @Slf4j
 public class PreCacheJob {
 
+    //预热的每页条数，和推荐接口的默认值一致
+    private static final long RECOMMEND_PAGE_SIZE = 8;
+
+    //分片数
+    private static final int SHARD_COUNT = 16;
+
+    //每次管道写入的键数
+    private static final int PIPELINE_BATCH_SIZE = 500;
+
+    //执行周期
+    private static final long PERIOD_MILLIS = 10 * 60 * 1000L;
+
+    //缓存过期时间，比执行周期长，保证下一轮预热前不会过期
+    private static final long EXPIRE_MILLIS = 20 * 60 * 1000L;
+
+    //过期时间的随机增量上限
+    private static final long EXPIRE_JITTER_MILLIS = 5 * 60 * 1000L;
+
+    //每一轮的分片计数器，值为下一个待领取的分片
+    private static final String SHARD_COUNTER_KEY = "yupao:precachejob:shard:%s";
+
     @Resource
     private UserService userService;
 
+    @Resource
+    private ActiveUserManager activeUserManager;
+
     @Resource
     private RedissonClient redissonClient;
 
-    //重点用户
-    private List<Long> mainUserList = Arrays.asList(1L);
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
 
-    //每天执行一次，预热推荐用户
-    @Scheduled(cron = "0 49 15 * * *")
+    //每10分钟执行一次，预热活跃用户的推荐用户
+    @Scheduled(cron = "0 */10 * * * *")
     public void doCacheRecommendUser() {
-        RLock lock = redissonClient.getLock("yupao:precachejob:docache:lock");
+        long startTime = System.currentTimeMillis();
+        //同一轮的各节点使用同一个计数器
+        long round = startTime / PERIOD_MILLIS;
+        RAtomicLong shardCounter = redissonClient.getAtomicLong(String.format(SHARD_COUNTER_KEY, round));
+        int shardNum = 0;
+        long warmedUserNum = 0;
+        long writtenBytes = 0;
         try {
-            if(lock.tryLock(0,-1,TimeUnit.MILLISECONDS)){
-                log.info("开始预热推荐用户");
-                for (Long userId : mainUserList) {
-                    QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-                    Page<User> userPage = userService.page(new Page<>(1,20),queryWrapper);
-                    String redisKey = String.format("yupao:user:recommend:%s", userId);
-                    userService.setRedisCache(redisKey, userPage, 30L, TimeUnit.MINUTES);
+            List<Long> activeUserIdList = null;
+            byte[] value = null;
+            long shard;
+            while ((shard = shardCounter.getAndIncrement()) < SHARD_COUNT) {
+                if (activeUserIdList == null) {
+                    activeUserIdList = activeUserManager.listActiveUserIds();
+                    //推荐首页对所有用户相同，每轮只查一次库、序列化一次
+                    Page<User> userPage = userService.loadRecommendUsers(1, RECOMMEND_PAGE_SIZE);
+                    value = getValueSerializer().serialize(userPage);
+                }
+                List<Long> shardUserIdList = new ArrayList<>();
+                for (Long userId : activeUserIdList) {
+                    if (userId % SHARD_COUNT == shard) {
+                        shardUserIdList.add(userId);
+                    }
                 }
-                log.info("推荐用户预热完毕");
+                writtenBytes += writeShard(shardUserIdList, value);
+                warmedUserNum += shardUserIdList.size();
+                shardNum++;
             }
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            //锁的释放不能放try，要保证手动释放一定执行，防止看门狗机制一直续期
-            if(lock.isHeldByCurrentThread()){
-                lock.unlock();
+            //计数器在第一次领取时创建，这一轮结束后就没用了
+            shardCounter.expire(Duration.ofMillis(PERIOD_MILLIS * 2));
+        } catch (Exception e) {
+            log.error("precache recommend user error", e);
+        }
+        if (shardNum > 0) {
+            log.info("推荐用户预热完毕，分片数={}，用户数={}，写入字节数={}，耗时={}ms",
+                    shardNum, warmedUserNum, writtenBytes, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * 用管道分批写入一个分片的缓存
+     *
+     * @param userIdList 分片内的用户id
+     * @param value      序列化后的推荐用户分页
+     * @return long 写入的字节数（键+值）
+     */
+    private long writeShard(List<Long> userIdList, byte[] value) {
+        long writtenBytes = 0;
+        for (int from = 0; from < userIdList.size(); from += PIPELINE_BATCH_SIZE) {
+            List<Long> batchUserIdList = userIdList.subList(from, Math.min(from + PIPELINE_BATCH_SIZE, userIdList.size()));
+            List<byte[]> keyList = new ArrayList<>(batchUserIdList.size());
+            for (Long userId : batchUserIdList) {
+                byte[] key = String.format(RECOMMEND_CACHE_KEY, userId, 1, RECOMMEND_PAGE_SIZE).getBytes(StandardCharsets.UTF_8);
+                keyList.add(key);
+                writtenBytes += key.length + value.length;
             }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[] key : keyList) {
+                    //过期时间加随机值，防止同时过期
+                    long expireMillis = EXPIRE_MILLIS + ThreadLocalRandom.current().nextLong(EXPIRE_JITTER_MILLIS);
+                    connection.set(key, value, Expiration.milliseconds(expireMillis), RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
         }
+        return writtenBytes;
+    }
 
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> getValueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
     }
 }
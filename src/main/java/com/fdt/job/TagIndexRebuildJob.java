@@ -0,0 +1,36 @@
+package com.fdt.job;
+
+import com.fdt.manager.UserMatchEngine;
+import com.fdt.manager.UserTagIndexManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+//定时任务，重建标签倒排索引和匹配引擎，同步其他节点对用户标签的修改
+@Component
+@Slf4j
+public class TagIndexRebuildJob {
+
+    @Resource
+    private UserTagIndexManager userTagIndexManager;
+
+    @Resource
+    private UserMatchEngine userMatchEngine;
+
+    //每30分钟重建一次
+    @Scheduled(fixedDelay = 30 * 60 * 1000L, initialDelay = 30 * 60 * 1000L)
+    public void doRebuildTagIndex() {
+        try {
+            userTagIndexManager.rebuild();
+        } catch (Exception e) {
+            log.error("rebuild user tag index error", e);
+        }
+        try {
+            userMatchEngine.rebuild();
+        } catch (Exception e) {
+            log.error("rebuild user match engine error", e);
+        }
+    }
+}
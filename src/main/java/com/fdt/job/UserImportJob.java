@@ -0,0 +1,246 @@
+package com.fdt.job;
+
+import com.alibaba.excel.EasyExcel;
+import com.fdt.common.ErrorCode;
+import com.fdt.exception.BusinessException;
+import com.fdt.manager.UserAccountBloomFilter;
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import com.fdt.model.vo.UserImportProgressVO;
+import com.fdt.once.PlanetUserInfo;
+import com.fdt.once.UserImportListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+//用户批量导入，代替原来 once 包下读整张表的 main 方法
+//读取线程用 UserImportListener 流式解析excel，攒够一批交给有界线程池多行插入
+//线程池队列满时由读取线程自己执行插入（CallerRunsPolicy），读取速度自动降到和插入速度一致，内存中最多只有几批数据
+@Component
+@Slf4j
+public class UserImportJob {
+
+    /**
+     * 每批插入的行数
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * 插入线程数
+     */
+    private static final int WORKER_NUM = 4;
+
+    /**
+     * 等待插入的批数
+     */
+    private static final int QUEUE_CAPACITY = 8;
+
+    /**
+     * 保留最近多少个任务的进度
+     */
+    private static final int MAX_TASK_NUM = 20;
+
+    private static final String STATUS_RUNNING = "running";
+
+    private static final String STATUS_FINISHED = "finished";
+
+    private static final String STATUS_FAILED = "failed";
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private UserAccountBloomFilter userAccountBloomFilter;
+
+    private final ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+
+    private final ThreadPoolExecutor workerExecutor = new ThreadPoolExecutor(WORKER_NUM, WORKER_NUM,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    //同一时间只执行一个导入任务，文件内去重和插入线程池都不用考虑多个任务之间的影响
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Map<String, ImportTask> taskMap = Collections.synchronizedMap(new LinkedHashMap<String, ImportTask>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImportTask> eldest) {
+            return size() > MAX_TASK_NUM;
+        }
+    });
+
+    /**
+     * 一次导入的进度，读取端的计数在监听器中，插入端的计数在这里
+     */
+    private static class ImportTask {
+
+        private final String taskId = UUID.randomUUID().toString();
+
+        private final String fileName;
+
+        private final Date startTime = new Date();
+
+        private final AtomicLong insertedRows = new AtomicLong();
+
+        private final AtomicLong existedRows = new AtomicLong();
+
+        private final AtomicLong failedRows = new AtomicLong();
+
+        private volatile UserImportListener listener;
+
+        private volatile String status = STATUS_RUNNING;
+
+        private volatile Date endTime;
+
+        private volatile String errorMessage;
+
+        private ImportTask(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    /**
+     * 异步导入用户
+     *
+     * @param file     要导入的excel文件，导入结束后删除
+     * @param fileName 原始文件名
+     * @return String 导入任务id
+     */
+    public String importAsync(File file, String fileName) {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "已有导入任务在执行");
+        }
+        ImportTask importTask = new ImportTask(fileName);
+        taskMap.put(importTask.taskId, importTask);
+        try {
+            readerExecutor.execute(() -> {
+                try {
+                    doImport(file, importTask);
+                } finally {
+                    running.set(false);
+                    if (!file.delete()) {
+                        log.warn("delete import file failed, path={}", file.getAbsolutePath());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+        return importTask.taskId;
+    }
+
+    /**
+     * 查询导入进度
+     *
+     * @param taskId 导入任务id
+     * @return UserImportProgressVO 导入进度，任务不存在时返回null
+     */
+    public UserImportProgressVO getProgress(String taskId) {
+        ImportTask importTask = taskMap.get(taskId);
+        if (importTask == null) {
+            return null;
+        }
+        UserImportProgressVO progressVO = new UserImportProgressVO();
+        progressVO.setTaskId(importTask.taskId);
+        progressVO.setFileName(importTask.fileName);
+        progressVO.setStatus(importTask.status);
+        progressVO.setStartTime(importTask.startTime);
+        progressVO.setEndTime(importTask.endTime);
+        progressVO.setErrorMessage(importTask.errorMessage);
+        UserImportListener listener = importTask.listener;
+        if (listener != null) {
+            progressVO.setReadRows(listener.getReadRows());
+            progressVO.setInvalidRows(listener.getInvalidRows());
+            progressVO.setRejectedRows(listener.getRejectedRows());
+            progressVO.setDuplicateRows(listener.getDuplicateRows() + importTask.existedRows.get());
+        }
+        progressVO.setInsertedRows(importTask.insertedRows.get());
+        progressVO.setFailedRows(importTask.failedRows.get());
+        long endMillis = importTask.endTime == null ? System.currentTimeMillis() : importTask.endTime.getTime();
+        long costMillis = Math.max(endMillis - importTask.startTime.getTime(), 1);
+        progressVO.setRowsPerSecond(importTask.insertedRows.get() * 1000 / costMillis);
+        return progressVO;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        readerExecutor.shutdownNow();
+        workerExecutor.shutdownNow();
+    }
+
+    private void doImport(File file, ImportTask importTask) {
+        log.info("开始导入用户，taskId={}，fileName={}", importTask.taskId, importTask.fileName);
+        List<Future<?>> futureList = new ArrayList<>();
+        UserImportListener listener = new UserImportListener(BATCH_SIZE,
+                userList -> futureList.add(workerExecutor.submit(() -> insertBatch(userList, importTask))));
+        importTask.listener = listener;
+        try {
+            EasyExcel.read(file, PlanetUserInfo.class, listener).sheet().doRead();
+            //等所有批次插入完
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+            importTask.status = STATUS_FINISHED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            importTask.status = STATUS_FAILED;
+            importTask.errorMessage = "导入被中断";
+        } catch (Exception e) {
+            log.error("import user error, taskId={}", importTask.taskId, e);
+            importTask.status = STATUS_FAILED;
+            importTask.errorMessage = e.getMessage();
+        } finally {
+            importTask.endTime = new Date();
+        }
+        UserImportProgressVO progressVO = getProgress(importTask.taskId);
+        log.info("用户导入结束，taskId={}，状态={}，读取行数={}，插入行数={}，重复行数={}，不合法行数={}，失败行数={}，每秒插入行数={}",
+                importTask.taskId, importTask.status, progressVO.getReadRows(), progressVO.getInsertedRows(),
+                progressVO.getDuplicateRows(), progressVO.getInvalidRows(), progressVO.getFailedRows(),
+                progressVO.getRowsPerSecond());
+    }
+
+    /**
+     * 插入一批用户，先查出库中已存在账号或星球编号的行，其余的一条多行insert插入
+     * 查询和插入之间并发注册的重复行由唯一索引和 on duplicate key update 跳过，不会让整批失败（这些行会计入插入行数）
+     *
+     * @param userList   一批用户，文件内已去重
+     * @param importTask 导入任务
+     */
+    private void insertBatch(List<User> userList, ImportTask importTask) {
+        try {
+            List<String> userAccountList = userList.stream().map(User::getUserAccount).collect(Collectors.toList());
+            List<String> planetCodeList = userList.stream().map(User::getPlanetCode).collect(Collectors.toList());
+            Set<String> existedAccountSet = new HashSet<>();
+            Set<String> existedPlanetCodeSet = new HashSet<>();
+            for (User existedUser : userMapper.listByAccountsOrPlanetCodes(userAccountList, planetCodeList)) {
+                existedAccountSet.add(existedUser.getUserAccount());
+                existedPlanetCodeSet.add(existedUser.getPlanetCode());
+            }
+            List<User> insertList = new ArrayList<>(userList.size());
+            for (User user : userList) {
+                if (!existedAccountSet.contains(user.getUserAccount()) && !existedPlanetCodeSet.contains(user.getPlanetCode())) {
+                    insertList.add(user);
+                }
+            }
+            if (!insertList.isEmpty()) {
+                userMapper.insertBatch(insertList);
+            }
+            //已存在的账号也一起加入过滤器，多加的账号只会让注册时多查一次库
+            userAccountBloomFilter.addAll(userAccountList);
+            importTask.insertedRows.addAndGet(insertList.size());
+            importTask.existedRows.addAndGet(userList.size() - insertList.size());
+        } catch (Exception e) {
+            //一批失败不影响其他批次，失败的行数计入进度
+            log.error("insert user batch error, taskId={}, size={}", importTask.taskId, userList.size(), e);
+            importTask.failedRows.addAndGet(userList.size());
+        }
+    }
+}
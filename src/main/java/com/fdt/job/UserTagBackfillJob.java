@@ -0,0 +1,171 @@
+package com.fdt.job;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import com.fdt.service.UserTagService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RLock;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.fdt.contant.UserContant.USER_TAG_BACKFILLED_KEY;
+import static com.fdt.contant.UserContant.USER_TAG_RETRY_KEY;
+
+//定时任务，把 user.tags 中的json标签回填到 user_tag 关系表
+//用游标流式读取用户，按批写入，每批完成后在redis记录进度，中断后从进度处继续
+//进度之前的用户不会再扫描，修改标签时同步失败的用户记在重试集合中，每次执行时先重新同步这些用户
+@Component
+@Slf4j
+public class UserTagBackfillJob {
+
+    /**
+     * 每批处理的用户数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private static final String LOCK_KEY = "yupao:usertag:backfill:lock";
+
+    private static final String CHECKPOINT_KEY = "yupao:usertag:backfill:lastId";
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private UserTagService userTagService;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    //每天凌晨回填一次，只处理重试集合中的用户和上次进度之后新增的用户
+    @Scheduled(cron = "0 30 3 * * *")
+    public void doBackfillUserTag() {
+        backfill(false);
+    }
+
+    /**
+     * 异步执行回填
+     *
+     * @param reset 是否从头开始
+     */
+    public void backfillAsync(boolean reset) {
+        executorService.execute(() -> backfill(reset));
+    }
+
+    /**
+     * 执行回填
+     *
+     * @param reset 是否从头开始
+     * @return long 本次处理的用户数
+     */
+    public long backfill(boolean reset) {
+        RLock lock = redissonClient.getLock(LOCK_KEY);
+        long processed = 0;
+        try {
+            if (!lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                log.info("用户标签回填任务正在其他节点执行");
+                return 0;
+            }
+            processed += retryFailedUsers();
+            RAtomicLong checkpoint = redissonClient.getAtomicLong(CHECKPOINT_KEY);
+            if (reset) {
+                checkpoint.set(0);
+                redissonClient.getBucket(USER_TAG_BACKFILLED_KEY).delete();
+            }
+            long lastId = checkpoint.get();
+            log.info("开始回填用户标签关系，lastId={}", lastId);
+            long startTime = System.currentTimeMillis();
+            //单独打开一个SqlSession持有游标，写入走其他连接，互不影响
+            try (SqlSession sqlSession = sqlSessionFactory.openSession();
+                 Cursor<User> cursor = sqlSession.getMapper(UserMapper.class).streamUserTags(lastId)) {
+                List<User> batchUserList = new ArrayList<>(BATCH_SIZE);
+                for (User user : cursor) {
+                    batchUserList.add(user);
+                    if (batchUserList.size() >= BATCH_SIZE) {
+                        processed += flush(batchUserList, checkpoint);
+                    }
+                }
+                processed += flush(batchUserList, checkpoint);
+            }
+            //扫描到最后一个用户，进度之前的用户都已回填，之后新增和修改的用户由更新用户时同步
+            redissonClient.getBucket(USER_TAG_BACKFILLED_KEY).set("1");
+            log.info("用户标签关系回填完毕，处理用户数={}，耗时={}ms", processed, System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("backfill user tag interrupted", e);
+        } catch (Exception e) {
+            log.error("backfill user tag error, processed={}", processed, e);
+        } finally {
+            //锁的释放不能放try，要保证手动释放一定执行，防止看门狗机制一直续期
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+        return processed;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * 重新同步标签关系同步失败的用户
+     * 先从集合中移除再同步，同步期间再次失败的用户会重新加入集合，本次同步失败的放回集合等下次处理
+     *
+     * @return int 处理的用户数
+     */
+    private int retryFailedUsers() {
+        RSet<Long> retrySet = redissonClient.getSet(USER_TAG_RETRY_KEY);
+        Set<Long> userIdSet = retrySet.readAll();
+        if (userIdSet.isEmpty()) {
+            return 0;
+        }
+        retrySet.removeAll(userIdSet);
+        try {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "tags");
+            queryWrapper.in("id", userIdSet);
+            //已删除的用户查不到，不再处理
+            List<User> userList = userMapper.selectList(queryWrapper);
+            userTagService.syncUserTagsBatch(userList);
+            log.info("重新同步用户标签关系，用户数={}", userList.size());
+            return userList.size();
+        } catch (Exception e) {
+            retrySet.addAll(userIdSet);
+            throw e;
+        }
+    }
+
+    private int flush(List<User> batchUserList, RAtomicLong checkpoint) {
+        if (batchUserList.isEmpty()) {
+            return 0;
+        }
+        int size = batchUserList.size();
+        userTagService.syncUserTagsBatch(batchUserList);
+        //这一批写入成功后再记录进度
+        checkpoint.set(batchUserList.get(size - 1).getId());
+        batchUserList.clear();
+        return size;
+    }
+}
@@ -0,0 +1,64 @@
+package com.fdt.manager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 活跃用户记录
+ * 用户登录时写入redis有序集合（分数为最近登录时间），缓存预热等任务据此只处理近期活跃的用户
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class ActiveUserManager {
+
+    private static final String ACTIVE_USER_KEY = "yupao:user:active";
+
+    /**
+     * 多久内登录过算活跃用户
+     */
+    private static final long ACTIVE_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(3);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 记录用户登录，记录失败不影响登录
+     *
+     * @param userId 用户id
+     */
+    public void recordLogin(long userId) {
+        try {
+            stringRedisTemplate.opsForZSet().add(ACTIVE_USER_KEY, String.valueOf(userId), System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("record active user error, userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 查询近期活跃的用户，同时清理已经不活跃的记录
+     *
+     * @return List<Long> 活跃用户id
+     */
+    public List<Long> listActiveUserIds() {
+        long minScore = System.currentTimeMillis() - ACTIVE_WINDOW_MILLIS;
+        stringRedisTemplate.opsForZSet().removeRangeByScore(ACTIVE_USER_KEY, 0, minScore - 1);
+        Set<String> memberSet = stringRedisTemplate.opsForZSet().rangeByScore(ACTIVE_USER_KEY, minScore, Double.MAX_VALUE);
+        List<Long> userIdList = new ArrayList<>();
+        if (memberSet == null) {
+            return userIdList;
+        }
+        for (String member : memberSet) {
+            userIdList.add(Long.parseLong(member));
+        }
+        return userIdList;
+    }
+}
@@ -0,0 +1,306 @@
+package com.fdt.manager;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 签名令牌登录态
+ * 登录时签发 base64url(用户id:角色:过期时间:令牌id).base64url(HMAC-SHA256签名) 的令牌，每次请求在本地验签，不需要读redis中的session
+ * 令牌中的角色不用于权限判断，权限以数据库中的当前角色为准
+ * 退出登录时把令牌id写入redis的吊销集合（分数为令牌过期时间），并通过发布订阅通知所有节点；
+ * 各节点在内存中保存一份吊销集合，验签时只查本地，定期从redis全量同步防止漏掉通知
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class AuthTokenManager {
+
+    private static final String MODE_TOKEN = "token";
+
+    /**
+     * 保存令牌的cookie名
+     */
+    private static final String TOKEN_COOKIE_NAME = "yupao_token";
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String REVOKED_KEY = "yupao:auth:revoked";
+
+    /**
+     * 吊销通知的频道
+     */
+    private static final String REVOKE_CHANNEL = "yupao:auth:revoke";
+
+    private static final String CLAIM_SEPARATOR = ":";
+
+    /**
+     * 登录态方式 session-redis中的session token-签名令牌
+     */
+    @Value("${yupao.auth.mode:session}")
+    private String mode;
+
+    @Value("${yupao.auth.token.secret:}")
+    private String secret;
+
+    /**
+     * 令牌有效期，和session失效时间一致
+     */
+    @Value("${yupao.auth.token.expire-seconds:86400}")
+    private long expireSeconds;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private SecretKeySpec secretKey;
+
+    /**
+     * 本地的吊销集合，令牌id -> 令牌过期时间（秒）
+     */
+    private final Map<String, Long> revokedTokenMap = new ConcurrentHashMap<>();
+
+    /**
+     * 令牌中的登录信息
+     */
+    @Data
+    public static class TokenClaims {
+
+        private long userId;
+
+        private int userRole;
+
+        /**
+         * 过期时间（秒）
+         */
+        private long expireAt;
+
+        private String tokenId;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (StringUtils.isBlank(secret)) {
+            throw new IllegalStateException("yupao.auth.token.secret must be set when yupao.auth.mode=token");
+        }
+        secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        redisMessageListenerContainer.addMessageListener(
+                (Message message, byte[] pattern) -> onRevoke(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(REVOKE_CHANNEL));
+        syncRevokedTokens();
+    }
+
+    public boolean isEnabled() {
+        return MODE_TOKEN.equals(mode);
+    }
+
+    /**
+     * 签发令牌
+     *
+     * @param userId   用户id
+     * @param userRole 用户角色
+     * @return String 令牌
+     */
+    public String issue(long userId, int userRole) {
+        long expireAt = System.currentTimeMillis() / 1000 + expireSeconds;
+        String tokenId = UUID.randomUUID().toString().replace("-", "");
+        String payload = userId + CLAIM_SEPARATOR + userRole + CLAIM_SEPARATOR + expireAt + CLAIM_SEPARATOR + tokenId;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * 令牌写入cookie，同时放在响应头中给非浏览器客户端使用
+     *
+     * @param response 响应
+     * @param token    令牌
+     */
+    public void writeToken(HttpServletResponse response, String token) {
+        ResponseCookie cookie = ResponseCookie.from(TOKEN_COOKIE_NAME, token)
+                .httpOnly(true)
+                .path("/")
+                .maxAge(expireSeconds)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        response.setHeader(AUTHORIZATION_HEADER, BEARER_PREFIX + token);
+    }
+
+    /**
+     * 清除cookie中的令牌
+     *
+     * @param response 响应
+     */
+    public void clearToken(HttpServletResponse response) {
+        ResponseCookie cookie = ResponseCookie.from(TOKEN_COOKIE_NAME, "")
+                .httpOnly(true)
+                .path("/")
+                .maxAge(0)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    /**
+     * 从请求中取出令牌并校验，只在本地计算，不访问redis
+     *
+     * @param request 请求
+     * @return TokenClaims 登录信息，没有令牌或令牌无效、过期、已吊销时返回null
+     */
+    public TokenClaims verify(HttpServletRequest request) {
+        String token = getToken(request);
+        if (token == null) {
+            return null;
+        }
+        int index = token.indexOf('.');
+        if (index <= 0) {
+            return null;
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(token.substring(0, index));
+            signature = decoder.decode(token.substring(index + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        //固定时间比较，防止按耗时猜签名
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            return null;
+        }
+        String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(CLAIM_SEPARATOR);
+        if (parts.length != 4) {
+            return null;
+        }
+        TokenClaims tokenClaims = new TokenClaims();
+        try {
+            tokenClaims.setUserId(Long.parseLong(parts[0]));
+            tokenClaims.setUserRole(Integer.parseInt(parts[1]));
+            tokenClaims.setExpireAt(Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        tokenClaims.setTokenId(parts[3]);
+        if (tokenClaims.getExpireAt() <= System.currentTimeMillis() / 1000) {
+            return null;
+        }
+        if (revokedTokenMap.containsKey(tokenClaims.getTokenId())) {
+            return null;
+        }
+        return tokenClaims;
+    }
+
+    /**
+     * 吊销令牌（退出登录）
+     *
+     * @param tokenClaims 令牌中的登录信息
+     */
+    public void revoke(TokenClaims tokenClaims) {
+        String tokenId = tokenClaims.getTokenId();
+        revokedTokenMap.put(tokenId, tokenClaims.getExpireAt());
+        stringRedisTemplate.opsForZSet().add(REVOKED_KEY, tokenId, tokenClaims.getExpireAt());
+        stringRedisTemplate.convertAndSend(REVOKE_CHANNEL, tokenId + CLAIM_SEPARATOR + tokenClaims.getExpireAt());
+    }
+
+    /**
+     * 每30秒从redis全量同步吊销集合，同时清理已过期的令牌
+     */
+    @Scheduled(fixedDelay = 30 * 1000L, initialDelay = 30 * 1000L)
+    public void syncRevokedTokens() {
+        if (!isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        try {
+            stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, now);
+            Set<ZSetOperations.TypedTuple<String>> tupleSet =
+                    stringRedisTemplate.opsForZSet().rangeByScoreWithScores(REVOKED_KEY, now, Double.MAX_VALUE);
+            if (tupleSet != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tupleSet) {
+                    if (tuple.getValue() != null && tuple.getScore() != null) {
+                        revokedTokenMap.putIfAbsent(tuple.getValue(), tuple.getScore().longValue());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("sync revoked tokens error", e);
+        }
+        revokedTokenMap.values().removeIf(expireAt -> expireAt <= now);
+    }
+
+    private void onRevoke(String message) {
+        int index = message.lastIndexOf(CLAIM_SEPARATOR);
+        if (index < 0) {
+            return;
+        }
+        try {
+            revokedTokenMap.put(message.substring(0, index), Long.parseLong(message.substring(index + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("invalid revoke message: {}", message);
+        }
+    }
+
+    private String getToken(HttpServletRequest request) {
+        String header = request.getHeader(AUTHORIZATION_HEADER);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length()).trim();
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (TOKEN_COOKIE_NAME.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private byte[] sign(byte[] payloadBytes) {
+        try {
+            //Mac不是线程安全的，每次新建，开销只有初始化密钥
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac.doFinal(payloadBytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
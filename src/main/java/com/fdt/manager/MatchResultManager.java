@@ -0,0 +1,201 @@
+package com.fdt.manager;
+
+import com.fdt.utils.TopKSelector;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 预计算的匹配结果
+ * 每个用户的匹配结果存放在redis有序集合中，分数 = 编辑距离 * 10^10 + 用户id，按分数升序即为匹配顺序（距离相同id小的在前）
+ * 用户标签变化时记录变化事件，由后台任务找出受影响的用户重新计算
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class MatchResultManager {
+
+    /**
+     * 预计算的匹配人数，匹配接口最多获取19个
+     */
+    public static final int PRECOMPUTE_NUM = 20;
+
+    private static final String MATCH_RESULT_KEY = "yupao:user:match:%s";
+
+    /**
+     * 标签变化事件队列
+     */
+    private static final String TAG_CHANGE_KEY = "yupao:user:match:tagchange";
+
+    /**
+     * 分数中编辑距离的权重，用户id需小于该值
+     */
+    private static final double DISTANCE_FACTOR = 1e10;
+
+    /**
+     * 匹配结果的过期时间
+     */
+    private static final long EXPIRE_HOURS = 6;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * 用户标签变化事件
+     */
+    @Data
+    public static class TagChangeEvent {
+
+        private long userId;
+
+        private String oldTags;
+
+        private String newTags;
+    }
+
+    /**
+     * 读取预计算的匹配结果
+     *
+     * @param userId 用户id
+     * @param num    要获取的数量
+     * @return List<Long> 按匹配度排好序的用户id，没有预计算结果时返回null
+     */
+    public List<Long> getMatchUserIds(long userId, int num) {
+        Set<String> memberSet;
+        try {
+            memberSet = stringRedisTemplate.opsForZSet().range(String.format(MATCH_RESULT_KEY, userId), 0, num - 1);
+        } catch (Exception e) {
+            log.error("read match result error, userId={}", userId, e);
+            return null;
+        }
+        if (memberSet == null || memberSet.isEmpty()) {
+            return null;
+        }
+        List<Long> userIdList = new ArrayList<>(memberSet.size());
+        for (String member : memberSet) {
+            userIdList.add(Long.parseLong(member));
+        }
+        return userIdList;
+    }
+
+    /**
+     * 保存匹配结果，删除旧结果和写入新结果在一个事务中执行，读取方不会读到写了一半的结果
+     *
+     * @param userId       用户id
+     * @param topKSelector 匹配结果
+     */
+    public void saveMatchResult(long userId, TopKSelector topKSelector) {
+        String key = String.format(MATCH_RESULT_KEY, userId);
+        if (topKSelector == null || topKSelector.size() == 0) {
+            stringRedisTemplate.delete(key);
+            return;
+        }
+        long[] ids = topKSelector.sortedIds();
+        long[] scores = topKSelector.sortedScores();
+        Set<ZSetOperations.TypedTuple<String>> tupleSet = new HashSet<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            tupleSet.add(new DefaultTypedTuple<>(String.valueOf(ids[i]), scores[i] * DISTANCE_FACTOR + ids[i]));
+        }
+        stringRedisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> stringOperations = (RedisOperations<String, String>) operations;
+                stringOperations.multi();
+                stringOperations.delete(key);
+                stringOperations.opsForZSet().add(key, tupleSet);
+                stringOperations.expire(key, EXPIRE_HOURS, TimeUnit.HOURS);
+                return stringOperations.exec();
+            }
+        });
+    }
+
+    /**
+     * 批量判断哪些用户还没有匹配结果
+     *
+     * @param userIdList 用户id
+     * @return List<Long> 没有匹配结果的用户id
+     */
+    public List<Long> filterMissing(List<Long> userIdList) {
+        List<Object> existsList = stringRedisTemplate.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    for (Long userId : userIdList) {
+                        connection.exists(String.format(MATCH_RESULT_KEY, userId).getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                });
+        List<Long> missingList = new ArrayList<>();
+        for (int i = 0; i < userIdList.size(); i++) {
+            if (!Boolean.TRUE.equals(existsList.get(i))) {
+                missingList.add(userIdList.get(i));
+            }
+        }
+        return missingList;
+    }
+
+    /**
+     * 记录用户标签变化，记录失败不影响用户更新，受影响的结果会在过期后重新计算
+     *
+     * @param userId  用户id
+     * @param oldTags 修改前json格式的标签
+     * @param newTags 修改后json格式的标签
+     */
+    public void recordTagChange(long userId, String oldTags, String newTags) {
+        TagChangeEvent tagChangeEvent = new TagChangeEvent();
+        tagChangeEvent.setUserId(userId);
+        tagChangeEvent.setOldTags(oldTags);
+        tagChangeEvent.setNewTags(newTags);
+        try {
+            stringRedisTemplate.opsForList().rightPush(TAG_CHANGE_KEY, gson.toJson(tagChangeEvent));
+        } catch (Exception e) {
+            log.error("record tag change error, userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 处理队列头部的一批标签变化事件
+     * 一次读取一批，处理成功后才从队列中删除，处理失败时事件留在队列中下次重试
+     * 事件只从队尾加入，读取和删除之间队列头部不变，调用方需保证同一时间只有一个处理者
+     *
+     * @param count   最多处理的数量
+     * @param handler 事件处理，抛出异常时不删除事件
+     * @return int 处理并删除的事件数，队列为空时返回0
+     */
+    public int pollTagChanges(int count, Consumer<List<TagChangeEvent>> handler) {
+        List<String> jsonList = stringRedisTemplate.opsForList().range(TAG_CHANGE_KEY, 0, count - 1);
+        if (jsonList == null || jsonList.isEmpty()) {
+            return 0;
+        }
+        List<TagChangeEvent> eventList = new ArrayList<>(jsonList.size());
+        for (String json : jsonList) {
+            try {
+                eventList.add(gson.fromJson(json, TagChangeEvent.class));
+            } catch (JsonSyntaxException e) {
+                //格式错误的事件无法处理，跳过并随这一批删除，避免一直卡住队列
+                log.error("parse tag change event error, json={}", json, e);
+            }
+        }
+        if (!eventList.isEmpty()) {
+            handler.accept(eventList);
+        }
+        stringRedisTemplate.opsForList().trim(TAG_CHANGE_KEY, jsonList.size(), -1);
+        return jsonList.size();
+    }
+}
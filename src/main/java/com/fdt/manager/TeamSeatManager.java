@@ -0,0 +1,426 @@
+package com.fdt.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fdt.mapper.TeamUserMapper;
+import com.fdt.model.domain.TeamUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.*;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 队伍席位管理
+ * 在redis中维护每个队伍的成员集合和每个用户加入的队伍集合，集合大小就是队伍人数和用户已加入队伍数
+ * 加入队伍时用lua脚本原子地完成 重复加入/加入数量/队伍人数 三项校验并占座，不需要查库也不需要加锁
+ * 集合里固定放一个占位成员"0"，用来区分"未加载"和"空集合"；集合不存在时从mysql加载
+ * 集合每次占座、释放、恢复时刷新过期时间，只有长时间没有变化的集合才会过期，过期后从mysql重新加载，顺便修正和数据库的偏差；
+ * 有加入正在进行的集合刚刚刷新过，不会在这时过期重新加载。解散队伍时用一个脚本删除队伍集合并从成员的集合中移除队伍
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class TeamSeatManager {
+
+    /**
+     * 用户最多加入的队伍数
+     */
+    public static final int MAX_JOIN_TEAM_NUM = 5;
+
+    private static final String TEAM_SEAT_KEY = "yupao:team:seat:team:%s";
+
+    private static final String USER_SEAT_KEY_PREFIX = "yupao:team:seat:user:";
+
+    private static final String USER_SEAT_KEY = USER_SEAT_KEY_PREFIX + "%s";
+
+    /**
+     * 启动加载的锁，不能放在席位集合的前缀下
+     */
+    private static final String WARM_UP_LOCK_KEY = "yupao:team:seatwarmup:lock";
+
+    /**
+     * 占位成员
+     */
+    private static final String PLACEHOLDER = "0";
+
+    /**
+     * 席位集合闲置的过期时间，每次占座、释放、恢复都会刷新
+     */
+    private static final long SEAT_EXPIRE_SECONDS = 7 * 24 * 60 * 60L;
+
+    private static final int WARM_UP_BATCH_SIZE = 1000;
+
+    /**
+     * 占座脚本
+     * KEYS[1] 队伍成员集合 KEYS[2] 用户队伍集合
+     * ARGV[1] 用户id ARGV[2] 队伍id ARGV[3] 用户最多加入队伍数 ARGV[4] 队伍最大人数 ARGV[5] 过期秒数
+     * 返回 1-成功 -1-已加入 -2-加入数量已达上限 -3-队伍已满 -9-集合未加载
+     */
+    private static final String RESERVE_SCRIPT =
+            "if redis.call('exists', KEYS[1]) == 0 or redis.call('exists', KEYS[2]) == 0 then\n" +
+            "    return -9\n" +
+            "end\n" +
+            "redis.call('expire', KEYS[1], ARGV[5])\n" +
+            "redis.call('expire', KEYS[2], ARGV[5])\n" +
+            "if redis.call('scard', KEYS[2]) - 1 >= tonumber(ARGV[3]) then\n" +
+            "    return -2\n" +
+            "end\n" +
+            "if redis.call('sismember', KEYS[1], ARGV[1]) == 1 then\n" +
+            "    return -1\n" +
+            "end\n" +
+            "if redis.call('scard', KEYS[1]) - 1 >= tonumber(ARGV[4]) then\n" +
+            "    return -3\n" +
+            "end\n" +
+            "redis.call('sadd', KEYS[1], ARGV[1])\n" +
+            "redis.call('sadd', KEYS[2], ARGV[2])\n" +
+            "return 1";
+
+    /**
+     * 初始化集合脚本，集合已存在时不做任何事
+     * KEYS[1] 集合 ARGV[1] 过期秒数 ARGV[2..] 成员
+     */
+    private static final String INIT_SCRIPT =
+            "if redis.call('exists', KEYS[1]) == 1 then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "redis.call('sadd', KEYS[1], '" + PLACEHOLDER + "')\n" +
+            "for i = 2, #ARGV do\n" +
+            "    redis.call('sadd', KEYS[1], ARGV[i])\n" +
+            "end\n" +
+            "redis.call('expire', KEYS[1], ARGV[1])\n" +
+            "return 1";
+
+    /**
+     * 集合已加载时才添加成员，未加载的集合之后会从mysql加载到最新数据
+     * KEYS[1] 集合 ARGV[1] 成员 ARGV[2] 过期秒数
+     */
+    private static final String ADD_IF_LOADED_SCRIPT =
+            "if redis.call('exists', KEYS[1]) == 1 then\n" +
+            "    redis.call('expire', KEYS[1], ARGV[2])\n" +
+            "    return redis.call('sadd', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "return 0";
+
+    /**
+     * 释放座位脚本，从两个集合中移除并刷新过期时间
+     * KEYS[1] 队伍成员集合 KEYS[2] 用户队伍集合 ARGV[1] 用户id ARGV[2] 队伍id ARGV[3] 过期秒数
+     */
+    private static final String RELEASE_SCRIPT =
+            "redis.call('srem', KEYS[1], ARGV[1])\n" +
+            "redis.call('srem', KEYS[2], ARGV[2])\n" +
+            "redis.call('expire', KEYS[1], ARGV[3])\n" +
+            "redis.call('expire', KEYS[2], ARGV[3])\n" +
+            "return 1";
+
+    /**
+     * 移除队伍脚本，从每个成员的队伍集合中移除队伍并删除队伍集合，中间不会插入新的加入
+     * 用户集合的键由前缀和成员拼出，只能用于单机redis
+     * KEYS[1] 队伍成员集合 ARGV[1] 用户集合的键前缀 ARGV[2] 队伍id
+     */
+    private static final String REMOVE_TEAM_SCRIPT =
+            "local members = redis.call('smembers', KEYS[1])\n" +
+            "for i = 1, #members do\n" +
+            "    if members[i] ~= '" + PLACEHOLDER + "' then\n" +
+            "        redis.call('srem', ARGV[1] .. members[i], ARGV[2])\n" +
+            "    end\n" +
+            "end\n" +
+            "return redis.call('del', KEYS[1])";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private TeamUserMapper teamUserMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 占座结果
+     */
+    public enum SeatResult {
+        SUCCESS,
+        ALREADY_JOINED,
+        USER_JOIN_LIMIT,
+        TEAM_FULL
+    }
+
+    /**
+     * 原子地为用户在队伍中占一个座位
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     * @param maxNum 队伍最大人数
+     * @return SeatResult 占座结果
+     */
+    public SeatResult reserve(long teamId, long userId, int maxNum) {
+        String teamKey = String.format(TEAM_SEAT_KEY, teamId);
+        String userKey = String.format(USER_SEAT_KEY, userId);
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        for (int i = 0; i < 2; i++) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            Long result = script.eval(RScript.Mode.READ_WRITE, RESERVE_SCRIPT, RScript.ReturnType.INTEGER,
+                    Arrays.asList(teamKey, userKey), String.valueOf(userId), String.valueOf(teamId),
+                    String.valueOf(MAX_JOIN_TEAM_NUM), String.valueOf(maxNum), String.valueOf(SEAT_EXPIRE_SECONDS));
+            sample.stop(meterRegistry.timer("yupao.redisson.latency", "op", "seatReserve"));
+            if (result == 1) {
+                return SeatResult.SUCCESS;
+            } else if (result == -1) {
+                return SeatResult.ALREADY_JOINED;
+            } else if (result == -2) {
+                return SeatResult.USER_JOIN_LIMIT;
+            } else if (result == -3) {
+                return SeatResult.TEAM_FULL;
+            }
+            //集合未加载，从mysql加载后重试
+            loadTeamSeats(teamId);
+            loadUserSeats(userId);
+        }
+        throw new IllegalStateException("load team seat failed, teamId=" + teamId + ", userId=" + userId);
+    }
+
+    /**
+     * 用户是否在队伍中，集合未加载时先从mysql加载
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     * @return boolean
+     */
+    public boolean isMember(long teamId, long userId) {
+        return getTeamSeatSet(teamId).contains(String.valueOf(userId));
+    }
+
+    /**
+     * 批量查询用户是否在队伍中，不会从mysql加载
+     *
+     * @param pairList 队伍id和用户id
+     * @return List<Boolean> 和参数顺序一致，true-在队伍中 false-不在 null-队伍集合未加载
+     */
+    public List<Boolean> getMembership(List<TeamUser> pairList) {
+        RBatch batch = redissonClient.createBatch();
+        for (TeamUser teamUser : pairList) {
+            RSetAsync<String> teamSeatSet = batch.getSet(String.format(TEAM_SEAT_KEY, teamUser.getTeamId()), StringCodec.INSTANCE);
+            teamSeatSet.isExistsAsync();
+            teamSeatSet.containsAsync(String.valueOf(teamUser.getUserId()));
+        }
+        List<?> responses = batch.execute().getResponses();
+        List<Boolean> memberList = new ArrayList<>(pairList.size());
+        for (int i = 0; i < pairList.size(); i++) {
+            boolean exists = Boolean.TRUE.equals(responses.get(i * 2));
+            memberList.add(exists ? Boolean.TRUE.equals(responses.get(i * 2 + 1)) : null);
+        }
+        return memberList;
+    }
+
+    /**
+     * 恢复用户在队伍中的座位（集合已加载时），用于退出队伍失败时的补偿
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     */
+    public void restore(long teamId, long userId) {
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        String expireSeconds = String.valueOf(SEAT_EXPIRE_SECONDS);
+        script.eval(RScript.Mode.READ_WRITE, ADD_IF_LOADED_SCRIPT, RScript.ReturnType.INTEGER,
+                Collections.singletonList(String.format(TEAM_SEAT_KEY, teamId)), String.valueOf(userId), expireSeconds);
+        script.eval(RScript.Mode.READ_WRITE, ADD_IF_LOADED_SCRIPT, RScript.ReturnType.INTEGER,
+                Collections.singletonList(String.format(USER_SEAT_KEY, userId)), String.valueOf(teamId), expireSeconds);
+    }
+
+    /**
+     * 释放用户在队伍中的座位，用于插入关系失败时的补偿以及退出队伍
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     */
+    public void release(long teamId, long userId) {
+        redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, RELEASE_SCRIPT, RScript.ReturnType.INTEGER,
+                Arrays.asList(String.format(TEAM_SEAT_KEY, teamId), String.format(USER_SEAT_KEY, userId)),
+                String.valueOf(userId), String.valueOf(teamId), String.valueOf(SEAT_EXPIRE_SECONDS));
+    }
+
+    /**
+     * 事务提交后释放座位
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     */
+    public void releaseAfterCommit(long teamId, long userId) {
+        runAfterCommit(() -> release(teamId, userId));
+    }
+
+    /**
+     * 事务提交后记录成员（创建队伍时队长直接加入，不受人数校验）
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     */
+    public void addMemberAfterCommit(long teamId, long userId) {
+        runAfterCommit(() -> restore(teamId, userId));
+    }
+
+    /**
+     * 事务提交后移除整个队伍的座位（解散队伍）
+     *
+     * @param teamId 队伍id
+     */
+    public void removeTeamAfterCommit(long teamId) {
+        runAfterCommit(() -> redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE,
+                REMOVE_TEAM_SCRIPT, RScript.ReturnType.INTEGER, Collections.singletonList(String.format(TEAM_SEAT_KEY, teamId)),
+                USER_SEAT_KEY_PREFIX, String.valueOf(teamId)));
+    }
+
+    /**
+     * 应用启动后从mysql加载缺失的席位集合，减少首次使用时的查库
+     * 只通过初始化脚本创建不存在的集合：已存在的集合上可能有其他节点正在进行的加入和退出
+     * （开启异步批量写入时其中一部分还没写入mysql），不能删除或用mysql覆盖
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        RLock lock = redissonClient.getLock(WARM_UP_LOCK_KEY);
+        try {
+            if (!lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            long teamNum = warmUpSets("teamId", "userId", TEAM_SEAT_KEY, TeamUser::getTeamId, TeamUser::getUserId);
+            long userNum = warmUpSets("userId", "teamId", USER_SEAT_KEY, TeamUser::getUserId, TeamUser::getTeamId);
+            log.info("team seat warmed up, teams={}, users={}, cost={}ms", teamNum, userNum, System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("warm up team seat interrupted", e);
+        } catch (Exception e) {
+            log.error("warm up team seat error", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 分批加载一种席位集合：先按分组列查出一批分组id，再查出这些分组的全部关系，每个分组的集合一次初始化完整
+     *
+     * @param groupColumn  分组列（集合的键）
+     * @param memberColumn 成员列
+     * @param keyFormat    集合的键
+     * @param groupGetter  取分组id
+     * @param memberGetter 取成员id
+     * @return long 处理的集合数
+     */
+    private long warmUpSets(String groupColumn, String memberColumn, String keyFormat,
+                            Function<TeamUser, Long> groupGetter, Function<TeamUser, Long> memberGetter) {
+        long lastGroupId = 0;
+        long total = 0;
+        while (true) {
+            QueryWrapper<TeamUser> groupQueryWrapper = new QueryWrapper<>();
+            groupQueryWrapper.select(groupColumn);
+            groupQueryWrapper.gt(groupColumn, lastGroupId);
+            groupQueryWrapper.groupBy(groupColumn);
+            groupQueryWrapper.orderByAsc(groupColumn);
+            groupQueryWrapper.last("limit " + WARM_UP_BATCH_SIZE);
+            List<TeamUser> groupList = teamUserMapper.selectList(groupQueryWrapper);
+            if (groupList.isEmpty()) {
+                break;
+            }
+            List<Long> groupIdList = new ArrayList<>(groupList.size());
+            for (TeamUser teamUser : groupList) {
+                groupIdList.add(groupGetter.apply(teamUser));
+            }
+            QueryWrapper<TeamUser> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select(groupColumn, memberColumn);
+            queryWrapper.in(groupColumn, groupIdList);
+            Map<Long, List<String>> memberMap = new HashMap<>();
+            for (TeamUser teamUser : teamUserMapper.selectList(queryWrapper)) {
+                memberMap.computeIfAbsent(groupGetter.apply(teamUser), key -> new ArrayList<>())
+                        .add(String.valueOf(memberGetter.apply(teamUser)));
+            }
+            RBatch batch = redissonClient.createBatch();
+            RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
+            for (Map.Entry<Long, List<String>> entry : memberMap.entrySet()) {
+                script.evalAsync(RScript.Mode.READ_WRITE, INIT_SCRIPT, RScript.ReturnType.INTEGER,
+                        Collections.singletonList(String.format(keyFormat, entry.getKey())), initArgs(entry.getValue()));
+            }
+            batch.execute();
+            total += groupIdList.size();
+            lastGroupId = groupIdList.get(groupIdList.size() - 1);
+        }
+        return total;
+    }
+
+    private RSet<String> getTeamSeatSet(long teamId) {
+        RSet<String> teamSeatSet = redissonClient.getSet(String.format(TEAM_SEAT_KEY, teamId), StringCodec.INSTANCE);
+        if (!teamSeatSet.isExists()) {
+            loadTeamSeats(teamId);
+        }
+        return teamSeatSet;
+    }
+
+    private void loadTeamSeats(long teamId) {
+        QueryWrapper<TeamUser> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("userId");
+        queryWrapper.eq("teamId", teamId);
+        List<String> memberList = new ArrayList<>();
+        for (TeamUser teamUser : teamUserMapper.selectList(queryWrapper)) {
+            memberList.add(String.valueOf(teamUser.getUserId()));
+        }
+        initSet(String.format(TEAM_SEAT_KEY, teamId), memberList);
+    }
+
+    private void loadUserSeats(long userId) {
+        QueryWrapper<TeamUser> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("teamId");
+        queryWrapper.eq("userId", userId);
+        List<String> memberList = new ArrayList<>();
+        for (TeamUser teamUser : teamUserMapper.selectList(queryWrapper)) {
+            memberList.add(String.valueOf(teamUser.getTeamId()));
+        }
+        initSet(String.format(USER_SEAT_KEY, userId), memberList);
+    }
+
+    private void initSet(String key, List<String> memberList) {
+        redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, INIT_SCRIPT,
+                RScript.ReturnType.INTEGER, Collections.singletonList(key), initArgs(memberList));
+    }
+
+    private Object[] initArgs(List<String> memberList) {
+        Object[] args = new Object[memberList.size() + 1];
+        args[0] = String.valueOf(SEAT_EXPIRE_SECONDS);
+        for (int i = 0; i < memberList.size(); i++) {
+            args[i + 1] = memberList.get(i);
+        }
+        return args;
+    }
+
+    private void runAfterCommit(Runnable task) {
+        Runnable safeTask = () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                //mysql已提交，席位集合的偏差在集合闲置过期后从mysql重新加载时修正，这里只记录日志
+                log.error("update team seat error", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safeTask.run();
+                }
+            });
+        } else {
+            safeTask.run();
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.fdt.manager;
+
+import com.fdt.mapper.TeamUserMapper;
+import com.fdt.model.domain.TeamUser;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队伍成员关系的异步批量写入（write-behind）
+ * 开启后加入/退出队伍以redis席位集合为准，关系表的插入和删除先写本地预写日志（fsync后才返回），再由后台按顺序批量写入mysql
+ * 预写日志记录每个事件的序号，写入mysql后在检查点文件记录已写入的序号；进程崩溃后启动时重放检查点之后的事件，已确认的加入不会丢失
+ * 事件只表示某个用户和队伍的关系有变化，写入时以redis席位集合的当前状态为准（在队伍中就插入，不在就删除），
+ * 不依赖事件本身的类型和各节点之间的写入顺序；所有节点的写入在同一把分布式锁内执行，
+ * 读席位集合和写mysql之间不会插入其他节点的写入，同一用户的加入和退出落在不同节点也不会留下多余的关系
+ * 插入前跳过已存在的关系，重放多次结果也一样
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class TeamUserWriteBehind {
+
+    private static final int TYPE_JOIN = 1;
+
+    private static final int TYPE_QUIT = 2;
+
+    /**
+     * 每次写入mysql的最大事件数
+     */
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    private static final String WAL_FILE_NAME = "team_user.wal";
+
+    private static final String CHECKPOINT_FILE_NAME = "team_user.checkpoint";
+
+    /**
+     * 所有节点写入mysql时共用的锁
+     */
+    private static final String FLUSH_LOCK_KEY = "yupao:team:write-behind:flush:lock";
+
+    private static final long FLUSH_LOCK_WAIT_MILLIS = 3000L;
+
+    /**
+     * 是否开启异步批量写入，需要同时开启席位计数
+     */
+    @Value("${yupao.team.write-behind.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 预写日志所在目录
+     */
+    @Value("${yupao.team.write-behind.wal-dir:./data/wal}")
+    private String walDir;
+
+    @Resource
+    private TeamUserMapper teamUserMapper;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    @Resource
+    private TeamSeatManager teamSeatManager;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    //在新事务中写入，调用方（退出、解散队伍）自己的事务不影响已写入的事件
+    private TransactionTemplate transactionTemplate;
+
+    //写日志和入队在同一把锁内，队列中的事件按序号排列
+    private final Object appendLock = new Object();
+
+    private final Object syncLock = new Object();
+
+    private final Object flushLock = new Object();
+
+    private final Queue<TeamUserEvent> eventQueue = new ConcurrentLinkedQueue<>();
+
+    private FileChannel walChannel;
+
+    private Path checkpointPath;
+
+    private long lastSeq = 0;
+
+    private volatile long syncedSeq = 0;
+
+    private volatile long flushedSeq = 0;
+
+    /**
+     * 成员关系变化事件
+     */
+    private static class TeamUserEvent {
+
+        private final long seq;
+
+        private final int type;
+
+        private final long teamId;
+
+        private final long userId;
+
+        private final long time;
+
+        private TeamUserEvent(long seq, int type, long teamId, long userId, long time) {
+            this.seq = seq;
+            this.type = type;
+            this.teamId = teamId;
+            this.userId = userId;
+            this.time = time;
+        }
+
+        private String toLine() {
+            return seq + "," + type + "," + teamId + "," + userId + "," + time + "\n";
+        }
+
+        private static TeamUserEvent parse(String line) {
+            String[] parts = line.split(",");
+            if (parts.length != 5) {
+                return null;
+            }
+            try {
+                return new TeamUserEvent(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                        Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 打开预写日志并重放上次没有写入mysql的事件，在启动加载席位集合之前执行
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        if (!enabled) {
+            return;
+        }
+        Path dir = Paths.get(walDir);
+        Files.createDirectories(dir);
+        Path walPath = dir.resolve(WAL_FILE_NAME);
+        checkpointPath = dir.resolve(CHECKPOINT_FILE_NAME);
+        long checkpoint = readCheckpoint();
+        List<TeamUserEvent> replayList = new ArrayList<>();
+        lastSeq = checkpoint;
+        if (Files.exists(walPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(walPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    //崩溃时写了一半的最后一行解析不出来，这一行没有fsync，也没有返回成功，直接丢弃
+                    TeamUserEvent event = TeamUserEvent.parse(line);
+                    if (event == null || event.seq <= checkpoint) {
+                        continue;
+                    }
+                    replayList.add(event);
+                    lastSeq = Math.max(lastSeq, event.seq);
+                }
+            }
+        }
+        if (!replayList.isEmpty()) {
+            runWithFlushLock(() -> {
+                for (int from = 0; from < replayList.size(); from += FLUSH_BATCH_SIZE) {
+                    apply(replayList.subList(from, Math.min(from + FLUSH_BATCH_SIZE, replayList.size())));
+                }
+            });
+        }
+        writeCheckpoint(lastSeq);
+        syncedSeq = lastSeq;
+        flushedSeq = lastSeq;
+        walChannel = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        walChannel.truncate(0);
+        log.info("team user write-behind started, replayed={}, lastSeq={}", replayList.size(), lastSeq);
+    }
+
+    /**
+     * 记录加入队伍，在席位集合占座成功之后调用，写入预写日志后返回
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     */
+    public void join(long teamId, long userId) {
+        append(TYPE_JOIN, teamId, userId);
+    }
+
+    /**
+     * 记录退出队伍，在席位集合释放座位之后调用，写入预写日志后返回
+     *
+     * @param teamId 队伍id
+     * @param userId 用户id
+     */
+    public void quit(long teamId, long userId) {
+        append(TYPE_QUIT, teamId, userId);
+    }
+
+    /**
+     * 每200毫秒把积压的事件写入mysql
+     */
+    @Scheduled(fixedDelay = 200L)
+    public void doFlush() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flushAll();
+        } catch (Exception e) {
+            //事件还在队列和日志中，下次继续写
+            log.error("flush team user events error, flushedSeq={}", flushedSeq, e);
+        }
+    }
+
+    /**
+     * 同步把已记录的事件全部写入mysql，直接读写关系表的操作（转移队长、解散队伍）之前调用
+     */
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (eventQueue.isEmpty()) {
+                return;
+            }
+            runWithFlushLock(() -> {
+                List<TeamUserEvent> eventList = new ArrayList<>(FLUSH_BATCH_SIZE);
+                while (true) {
+                    eventList.clear();
+                    for (TeamUserEvent event : eventQueue) {
+                        eventList.add(event);
+                        if (eventList.size() >= FLUSH_BATCH_SIZE) {
+                            break;
+                        }
+                    }
+                    if (eventList.isEmpty()) {
+                        break;
+                    }
+                    apply(eventList);
+                    //写入成功后才出队，失败时下次从同一个位置开始
+                    for (int i = 0; i < eventList.size(); i++) {
+                        eventQueue.poll();
+                    }
+                    flushedSeq = eventList.get(eventList.size() - 1).seq;
+                    writeCheckpoint(flushedSeq);
+                }
+            });
+            truncateIfFlushed();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flushAll();
+        } catch (Exception e) {
+            log.error("flush team user events on shutdown error, remaining events will be replayed on startup", e);
+        }
+        try {
+            walChannel.close();
+        } catch (IOException e) {
+            log.error("close team user wal error", e);
+        }
+    }
+
+    private void append(int type, long teamId, long userId) {
+        if (!enabled) {
+            throw new IllegalStateException("team user write-behind is disabled");
+        }
+        long seq;
+        try {
+            synchronized (appendLock) {
+                seq = lastSeq + 1;
+                TeamUserEvent event = new TeamUserEvent(seq, type, teamId, userId, System.currentTimeMillis());
+                ByteBuffer buffer = ByteBuffer.wrap(event.toLine().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    walChannel.write(buffer);
+                }
+                lastSeq = seq;
+                eventQueue.add(event);
+            }
+            sync(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 组提交：等待的线程中只有一个执行fsync，一次fsync覆盖它之前写入的所有事件
+     *
+     * @param seq 要确保落盘的序号
+     */
+    private void sync(long seq) throws IOException {
+        if (syncedSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) {
+                return;
+            }
+            long writtenSeq;
+            synchronized (appendLock) {
+                writtenSeq = lastSeq;
+            }
+            walChannel.force(false);
+            syncedSeq = writtenSeq;
+        }
+    }
+
+    /**
+     * 在所有节点共用的锁内写入mysql，拿不到锁时抛出异常，事件留在队列中下次再写
+     *
+     * @param task 写入任务
+     */
+    private void runWithFlushLock(Runnable task) {
+        RLock lock = redissonClient.getLock(FLUSH_LOCK_KEY);
+        boolean locked = false;
+        try {
+            locked = lock.tryLock(FLUSH_LOCK_WAIT_MILLIS, -1, TimeUnit.MILLISECONDS);
+            if (!locked) {
+                throw new IllegalStateException("acquire team user flush lock timeout");
+            }
+            task.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("acquire team user flush lock interrupted", e);
+        } finally {
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 把一批事件涉及的关系写入mysql，需要在写入锁内调用
+     * 每个用户和队伍按席位集合的当前状态插入或删除关系；队伍集合未加载（如队伍已解散）时按最后一个事件的类型处理
+     *
+     * @param eventList 按序号排列的事件
+     */
+    private void apply(List<TeamUserEvent> eventList) {
+        Map<String, TeamUserEvent> lastEventMap = new LinkedHashMap<>();
+        for (TeamUserEvent event : eventList) {
+            lastEventMap.put(event.teamId + ":" + event.userId, event);
+        }
+        List<TeamUser> pairList = new ArrayList<>(lastEventMap.size());
+        for (TeamUserEvent event : lastEventMap.values()) {
+            TeamUser teamUser = new TeamUser();
+            teamUser.setTeamId(event.teamId);
+            teamUser.setUserId(event.userId);
+            teamUser.setJoinTime(new Date(event.time));
+            pairList.add(teamUser);
+        }
+        List<Boolean> memberList = teamSeatManager.getMembership(pairList);
+        List<TeamUser> joinList = new ArrayList<>();
+        List<TeamUser> quitList = new ArrayList<>();
+        int index = 0;
+        for (TeamUserEvent event : lastEventMap.values()) {
+            TeamUser teamUser = pairList.get(index);
+            Boolean member = memberList.get(index);
+            index++;
+            if (member != null ? member : event.type == TYPE_JOIN) {
+                joinList.add(teamUser);
+            } else {
+                quitList.add(teamUser);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!quitList.isEmpty()) {
+                teamUserMapper.deleteBatchByPair(quitList);
+            }
+            if (joinList.isEmpty()) {
+                return;
+            }
+            //跳过已经存在的关系，重放时不会重复插入
+            Set<String> existSet = new HashSet<>();
+            for (TeamUser teamUser : teamUserMapper.listByPair(joinList)) {
+                existSet.add(teamUser.getTeamId() + ":" + teamUser.getUserId());
+            }
+            List<TeamUser> insertList = new ArrayList<>(joinList.size());
+            for (TeamUser teamUser : joinList) {
+                if (!existSet.contains(teamUser.getTeamId() + ":" + teamUser.getUserId())) {
+                    insertList.add(teamUser);
+                }
+            }
+            if (!insertList.isEmpty()) {
+                teamUserMapper.insertBatch(insertList);
+            }
+        });
+    }
+
+    /**
+     * 所有事件都写入mysql后清空预写日志，防止日志无限增长
+     */
+    private void truncateIfFlushed() {
+        synchronized (appendLock) {
+            if (lastSeq != flushedSeq) {
+                return;
+            }
+            try {
+                walChannel.truncate(0);
+            } catch (IOException e) {
+                //清空失败只会让日志变大，重放时会跳过检查点之前的事件
+                log.error("truncate team user wal error", e);
+            }
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointPath)) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8).trim();
+        return content.isEmpty() ? 0 : Long.parseLong(content);
+    }
+
+    private void writeCheckpoint(long seq) {
+        //先写临时文件再原子替换，崩溃时检查点要么是旧值要么是新值
+        Path tempPath = checkpointPath.resolveSibling(CHECKPOINT_FILE_NAME + ".tmp");
+        try {
+            Files.write(tempPath, String.valueOf(seq).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                    StandardOpenOption.SYNC);
+            Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
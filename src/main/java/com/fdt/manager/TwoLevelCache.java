@@ -0,0 +1,158 @@
+package com.fdt.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二级缓存
+ * 一级是进程内的Caffeine缓存（有容量上限，短过期时间），二级是redis
+ * 写入或删除时通过redis发布订阅通知其他节点删除本地缓存，本地缓存的过期时间保证消息丢失时也只会短暂不一致
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class TwoLevelCache {
+
+    /**
+     * 缓存失效通知的频道
+     */
+    private static final String INVALIDATE_CHANNEL = "yupao:cache:invalidate";
+
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    private static final long LOCAL_MAXIMUM_SIZE = 1000;
+
+    private static final long LOCAL_EXPIRE_SECONDS = 60;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 当前节点的标识，收到自己发出的通知时不处理
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Cache<String, Object> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAXIMUM_SIZE)
+            .expireAfterWrite(LOCAL_EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+
+    @PostConstruct
+    public void init() {
+        //本地缓存的命中率（cache=twoLevelLocal），redis的命中率和耗时见 yupao.cache.redis.*
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "twoLevelLocal");
+        redisMessageListenerContainer.addMessageListener(
+                (Message message, byte[] pattern) -> onInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 读取缓存，先读本地，未命中再读redis并回填本地
+     *
+     * @param key 键
+     * @return Object 缓存值，不存在时返回null
+     */
+    public Object get(String key) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            value = redisTemplate.opsForValue().get(key);
+        } catch (Exception e) {
+            log.error("redis get key error", e);
+            return null;
+        } finally {
+            sample.stop(meterRegistry.timer("yupao.cache.redis.latency", "op", "get"));
+        }
+        meterRegistry.counter("yupao.cache.redis.gets", "result", value != null ? "hit" : "miss").increment();
+        if (value != null) {
+            localCache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 写入缓存，同时通知其他节点删除旧的本地缓存
+     *
+     * @param key   键
+     * @param value 值
+     * @param time  redis中的过期时间
+     * @param unit  时间单位
+     */
+    public void set(String key, Object value, long time, TimeUnit unit) {
+        //过期时间比本地缓存还短的数据不放本地，防止本地比redis存活更久
+        if (unit.toSeconds(time) >= LOCAL_EXPIRE_SECONDS) {
+            localCache.put(key, value);
+        } else {
+            localCache.invalidate(key);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            redisTemplate.opsForValue().set(key, value, time, unit);
+            publishInvalidate(key);
+        } catch (Exception e) {
+            log.error("redis set key error", e);
+        } finally {
+            sample.stop(meterRegistry.timer("yupao.cache.redis.latency", "op", "set"));
+        }
+    }
+
+    /**
+     * 删除缓存，同时通知其他节点删除本地缓存
+     *
+     * @param key 键
+     */
+    public void evict(String key) {
+        localCache.invalidate(key);
+        try {
+            redisTemplate.delete(key);
+            publishInvalidate(key);
+        } catch (Exception e) {
+            log.error("redis delete key error", e);
+        }
+    }
+
+    private void publishInvalidate(String key) {
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, nodeId + MESSAGE_SEPARATOR + key);
+    }
+
+    private void onInvalidate(String message) {
+        int index = message.indexOf(MESSAGE_SEPARATOR);
+        if (index < 0) {
+            return;
+        }
+        if (nodeId.equals(message.substring(0, index))) {
+            return;
+        }
+        localCache.invalidate(message.substring(index + 1));
+    }
+}
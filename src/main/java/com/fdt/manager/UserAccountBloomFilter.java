@@ -0,0 +1,152 @@
+package com.fdt.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已注册账号的布隆过滤器
+ * 注册时先查过滤器，不存在的账号直接插入，由唯一索引兜底；可能存在的账号再查一次库确认
+ * 过滤器只用来减少数据库访问，重建期间或redis异常时的漏判、误判都不会影响注册结果
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class UserAccountBloomFilter {
+
+    private static final String BLOOM_FILTER_KEY = "yupao:user:account:bloom";
+
+    private static final String REBUILD_LOCK_KEY = "yupao:user:account:bloom:rebuild:lock";
+
+    /**
+     * 预计账号数量，超过后误判率会上升，需要调大后重启重建
+     */
+    private static final long EXPECTED_INSERTIONS = 2_000_000L;
+
+    /**
+     * 误判率
+     */
+    private static final double FALSE_PROBABILITY = 0.001;
+
+    private static final int REBUILD_BATCH_SIZE = 5000;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private UserMapper userMapper;
+
+    /**
+     * 账号是否可能已被注册
+     *
+     * @param userAccount 账号
+     * @return boolean false-一定未注册 true-可能已注册（过滤器不可用时也返回true，由调用方查库）
+     */
+    public boolean mightContain(String userAccount) {
+        try {
+            return getBloomFilter().contains(userAccount);
+        } catch (Exception e) {
+            log.error("bloom filter contains error", e);
+            return true;
+        }
+    }
+
+    /**
+     * 注册成功后加入过滤器
+     *
+     * @param userAccount 账号
+     */
+    public void add(String userAccount) {
+        try {
+            getBloomFilter().add(userAccount);
+        } catch (Exception e) {
+            log.error("bloom filter add error", e);
+        }
+    }
+
+    /**
+     * 批量加入过滤器
+     *
+     * @param userAccounts 账号列表
+     */
+    public void addAll(Collection<String> userAccounts) {
+        if (userAccounts == null || userAccounts.isEmpty()) {
+            return;
+        }
+        try {
+            getBloomFilter().add(userAccounts);
+        } catch (Exception e) {
+            log.error("bloom filter add error", e);
+        }
+    }
+
+    /**
+     * 应用启动后从mysql重建过滤器，只有拿到锁的节点执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        RLock lock = redissonClient.getLock(REBUILD_LOCK_KEY);
+        try {
+            if (!lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            RBloomFilter<String> bloomFilter = getBloomFilter();
+            bloomFilter.delete();
+            bloomFilter.tryInit(EXPECTED_INSERTIONS, FALSE_PROBABILITY);
+            long lastId = 0;
+            long total = 0;
+            while (true) {
+                QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("id", "userAccount");
+                queryWrapper.gt("id", lastId);
+                queryWrapper.orderByAsc("id");
+                queryWrapper.last("limit " + REBUILD_BATCH_SIZE);
+                List<User> userList = userMapper.selectList(queryWrapper);
+                if (userList.isEmpty()) {
+                    break;
+                }
+                List<String> userAccountList = new ArrayList<>(userList.size());
+                for (User user : userList) {
+                    if (user.getUserAccount() != null) {
+                        userAccountList.add(user.getUserAccount());
+                    }
+                }
+                if (!userAccountList.isEmpty()) {
+                    bloomFilter.add(userAccountList);
+                }
+                total += userList.size();
+                lastId = userList.get(userList.size() - 1).getId();
+            }
+            log.info("user account bloom filter rebuilt, accounts={}, cost={}ms", total, System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("rebuild user account bloom filter interrupted", e);
+        } catch (Exception e) {
+            log.error("rebuild user account bloom filter error", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private RBloomFilter<String> getBloomFilter() {
+        return redissonClient.getBloomFilter(BLOOM_FILTER_KEY, StringCodec.INSTANCE);
+    }
+}
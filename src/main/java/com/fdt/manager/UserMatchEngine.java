@@ -0,0 +1,235 @@
+package com.fdt.manager;
+
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import com.fdt.utils.AlgorithmUtils;
+import com.fdt.utils.TopKSelector;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用户匹配引擎
+ * 把标签字符串映射为整数id，每个用户的标签预先编码成int数组常驻内存
+ * 匹配时直接在内存中计算编辑距离，不再查库、不再解析json；用户修改标签时只重新编码该用户
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class UserMatchEngine {
+
+    private static final Type TAG_LIST_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+
+    private static final int[] EMPTY_VECTOR = new int[0];
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * 标签字典：标签名称 -> 标签编号
+     */
+    private final Map<String, Integer> tagDictionary = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextTagCode = new AtomicInteger(0);
+
+    /**
+     * 用户id -> 编码后的标签（保持原有顺序，编辑距离和顺序有关）
+     */
+    private volatile Map<Long, int[]> userVectorMap = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    private final Object lock = new Object();
+
+    /**
+     * 重建期间发生的标签变更，不在重建时为null
+     */
+    private Map<Long, String> pendingChangeMap = null;
+
+    /**
+     * 应用启动完成后加载所有用户的标签，加载完成前匹配走原来的查库计算
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("build user match engine error", e);
+        }
+    }
+
+    /**
+     * 全量重建，用游标流式读取所有用户的标签
+     */
+    public void rebuild() {
+        synchronized (lock) {
+            pendingChangeMap = new LinkedHashMap<>();
+        }
+        long startTime = System.currentTimeMillis();
+        Map<Long, int[]> newUserVectorMap = new ConcurrentHashMap<>();
+        try (SqlSession sqlSession = sqlSessionFactory.openSession();
+             Cursor<User> cursor = sqlSession.getMapper(UserMapper.class).streamUserTags(0)) {
+            for (User user : cursor) {
+                int[] vector = encode(user.getTags());
+                if (vector != null) {
+                    newUserVectorMap.put(user.getId(), vector);
+                }
+            }
+        } catch (Exception e) {
+            synchronized (lock) {
+                pendingChangeMap = null;
+            }
+            throw new RuntimeException("load user tags error", e);
+        }
+        synchronized (lock) {
+            //重放加载期间的标签变更，防止被旧数据覆盖
+            for (Map.Entry<Long, String> entry : pendingChangeMap.entrySet()) {
+                applyUserTags(newUserVectorMap, entry.getKey(), entry.getValue());
+            }
+            pendingChangeMap = null;
+            userVectorMap = newUserVectorMap;
+            ready = true;
+        }
+        log.info("user match engine built, users={}, tags={}, cost={}ms",
+                newUserVectorMap.size(), tagDictionary.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 引擎是否可用
+     *
+     * @return boolean
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 用户标签变化时重新编码该用户
+     *
+     * @param userId   用户id
+     * @param tagsJson json格式的标签列表，为空表示用户没有标签
+     */
+    public void updateUserTags(long userId, String tagsJson) {
+        synchronized (lock) {
+            if (pendingChangeMap != null) {
+                pendingChangeMap.put(userId, tagsJson);
+            }
+            applyUserTags(userVectorMap, userId, tagsJson);
+        }
+    }
+
+    /**
+     * 移除用户
+     *
+     * @param userId 用户id
+     */
+    public void removeUser(long userId) {
+        updateUserTags(userId, null);
+    }
+
+    private void applyUserTags(Map<Long, int[]> vectorMap, long userId, String tagsJson) {
+        int[] vector = encode(tagsJson);
+        if (vector == null) {
+            vectorMap.remove(userId);
+        } else {
+            vectorMap.put(userId, vector);
+        }
+    }
+
+    /**
+     * 计算与给定标签编辑距离最小的num个用户
+     *
+     * @param userId   当前用户id，结果中排除自己
+     * @param tagsJson 当前用户json格式的标签
+     * @param num      要获取的数量
+     * @return TopKSelector 选择结果，按编辑距离升序
+     */
+    public TopKSelector match(long userId, String tagsJson, int num) {
+        int[] loginVector = encode(tagsJson);
+        if (loginVector == null) {
+            loginVector = EMPTY_VECTOR;
+        }
+        return match(userId, loginVector, num);
+    }
+
+    /**
+     * 用引擎中已编码的标签计算与该用户最匹配的num个用户（后台预计算使用，不需要查用户信息）
+     *
+     * @param userId 用户id
+     * @param num    要获取的数量
+     * @return TopKSelector 选择结果，用户没有标签时返回null
+     */
+    public TopKSelector matchUser(long userId, int num) {
+        int[] vector = userVectorMap.get(userId);
+        if (vector == null) {
+            return null;
+        }
+        return match(userId, vector, num);
+    }
+
+    private TopKSelector match(long userId, int[] loginVector, int num) {
+        TopKSelector topKSelector = new TopKSelector(num);
+        for (Map.Entry<Long, int[]> entry : userVectorMap.entrySet()) {
+            long candidateId = entry.getKey();
+            if (candidateId == userId) {
+                continue;
+            }
+            //距离超过当前第k名的候选人不可能入选，提前结束计算
+            long threshold = topKSelector.threshold();
+            int maxDistance = threshold >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) threshold;
+            int distance = AlgorithmUtils.boundedMinDistance(loginVector, entry.getValue(), maxDistance);
+            if (distance <= maxDistance) {
+                topKSelector.offer(candidateId, distance);
+            }
+        }
+        return topKSelector;
+    }
+
+    /**
+     * 把json标签编码为标签编号数组
+     *
+     * @param tagsJson json格式的标签列表
+     * @return int[] 标签编号，标签为空时返回null
+     */
+    private int[] encode(String tagsJson) {
+        if (StringUtils.isBlank(tagsJson)) {
+            return null;
+        }
+        List<String> tagList;
+        try {
+            tagList = gson.fromJson(tagsJson, TAG_LIST_TYPE);
+        } catch (JsonSyntaxException e) {
+            log.warn("parse user tags error, tags={}", tagsJson);
+            return null;
+        }
+        if (tagList == null || tagList.isEmpty()) {
+            return EMPTY_VECTOR;
+        }
+        int[] vector = new int[tagList.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = tagDictionary.computeIfAbsent(String.valueOf(tagList.get(i)),
+                    tagName -> nextTagCode.getAndIncrement());
+        }
+        return vector;
+    }
+}
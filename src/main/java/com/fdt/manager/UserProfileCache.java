@@ -0,0 +1,243 @@
+package com.fdt.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fdt.convert.UserConvert;
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import com.fdt.model.vo.UserVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.fdt.contant.UserContant.SAFE_USER_COLUMNS;
+
+/**
+ * 用户资料缓存
+ * 缓存脱敏后的用户信息（当前用户、队伍创建人、匹配用户等），按id批量读取
+ * 先读本地缓存，未命中的一次MGET读redis，仍未命中的一次查库并用管道回填redis
+ * 用户修改或删除时删除redis中的缓存，并通过发布订阅通知所有节点删除本地缓存；
+ * 修改前查到旧数据的请求可能在删除之后才回填，所以延迟一段时间再删除一次
+ * 缓存的对象是共享的，调用方不要修改
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class UserProfileCache {
+
+    private static final String USER_PROFILE_KEY = "yupao:user:profile:%s";
+
+    /**
+     * 缓存失效通知的频道，消息为用户id
+     */
+    private static final String INVALIDATE_CHANNEL = "yupao:user:profile:invalidate";
+
+    /**
+     * 按id查询用户时每批的id个数，防止in条件过长
+     */
+    private static final int QUERY_BY_IDS_BATCH_SIZE = 1000;
+
+    private static final long MAXIMUM_SIZE = 10000;
+
+    private static final long EXPIRE_MINUTES = 5;
+
+    /**
+     * redis中的过期时间，修改和删除会主动删除，过期只是兜底
+     */
+    private static final long REDIS_EXPIRE_MINUTES = 60;
+
+    /**
+     * 第二次删除的延迟，要大于一次查库加回填的耗时
+     */
+    private static final long DELAYED_INVALIDATE_MILLIS = 1000L;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Cache<Long, UserVO> userVOCache = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    private final ScheduledExecutorService invalidateExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 命中率等统计注册到监控指标（cache.gets等，cache=userProfile）
+     */
+    @PostConstruct
+    public void init() {
+        CaffeineCacheMetrics.monitor(meterRegistry, userVOCache, "userProfile");
+        redisMessageListenerContainer.addMessageListener(
+                (Message message, byte[] pattern) -> onInvalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 批量获取脱敏用户信息
+     *
+     * @param userIds 用户id
+     * @return Map<Long, UserVO> 用户id -> 脱敏用户信息，不存在的用户不在结果中
+     */
+    public Map<Long, UserVO> getUserVOMap(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        Set<Long> userIdSet = new HashSet<>(userIds);
+        userIdSet.remove(null);
+        Map<Long, UserVO> userVOMap = new HashMap<>(userVOCache.getAllPresent(userIdSet));
+        List<Long> missIdList = new ArrayList<>();
+        for (Long userId : userIdSet) {
+            if (!userVOMap.containsKey(userId)) {
+                missIdList.add(userId);
+            }
+        }
+        for (int from = 0; from < missIdList.size(); from += QUERY_BY_IDS_BATCH_SIZE) {
+            int to = Math.min(from + QUERY_BY_IDS_BATCH_SIZE, missIdList.size());
+            loadBatch(missIdList.subList(from, to), userVOMap);
+        }
+        return userVOMap;
+    }
+
+    /**
+     * 用户信息修改或删除时移除缓存
+     *
+     * @param userId 用户id
+     */
+    public void invalidate(long userId) {
+        doInvalidate(userId);
+        invalidateExecutor.schedule(() -> doInvalidate(userId), DELAYED_INVALIDATE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        invalidateExecutor.shutdownNow();
+    }
+
+    private void doInvalidate(long userId) {
+        userVOCache.invalidate(userId);
+        try {
+            redisTemplate.delete(String.format(USER_PROFILE_KEY, userId));
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(userId));
+        } catch (Exception e) {
+            log.error("invalidate user profile error, userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 加载一批本地未命中的用户，先MGET读redis，剩下的查库后回填
+     *
+     * @param userIdList 本地未命中的用户id
+     * @param userVOMap  结果
+     */
+    private void loadBatch(List<Long> userIdList, Map<Long, UserVO> userVOMap) {
+        List<Long> dbIdList = userIdList;
+        try {
+            List<String> keyList = new ArrayList<>(userIdList.size());
+            for (Long userId : userIdList) {
+                keyList.add(String.format(USER_PROFILE_KEY, userId));
+            }
+            List<Object> valueList = redisTemplate.opsForValue().multiGet(keyList);
+            if (valueList != null) {
+                dbIdList = new ArrayList<>();
+                for (int i = 0; i < userIdList.size(); i++) {
+                    Object value = valueList.get(i);
+                    if (value instanceof UserVO) {
+                        UserVO userVO = (UserVO) value;
+                        userVOCache.put(userIdList.get(i), userVO);
+                        userVOMap.put(userIdList.get(i), userVO);
+                    } else {
+                        dbIdList.add(userIdList.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            //redis不可用时直接查库
+            log.error("multi get user profile error", e);
+        }
+        if (dbIdList.isEmpty()) {
+            return;
+        }
+        List<UserVO> loadedList = new ArrayList<>(dbIdList.size());
+        //只查脱敏后的列
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(SAFE_USER_COLUMNS);
+        queryWrapper.in("id", dbIdList);
+        for (User user : userMapper.selectList(queryWrapper)) {
+            UserVO userVO = UserConvert.INSTANCE.toUserVO(user);
+            userVOCache.put(user.getId(), userVO);
+            userVOMap.put(user.getId(), userVO);
+            loadedList.add(userVO);
+        }
+        if (!loadedList.isEmpty()) {
+            saveToRedis(loadedList);
+        }
+    }
+
+    /**
+     * 用管道把查库得到的用户写入redis
+     *
+     * @param userVOList 用户信息
+     */
+    private void saveToRedis(List<UserVO> userVOList) {
+        RedisSerializer<Object> valueSerializer = getValueSerializer();
+        Expiration expiration = Expiration.from(REDIS_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UserVO userVO : userVOList) {
+                    byte[] key = String.format(USER_PROFILE_KEY, userVO.getId()).getBytes(StandardCharsets.UTF_8);
+                    connection.set(key, valueSerializer.serialize(userVO), expiration, RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("save user profile error", e);
+        }
+    }
+
+    private void onInvalidate(String message) {
+        try {
+            userVOCache.invalidate(Long.parseLong(message));
+        } catch (NumberFormatException e) {
+            log.warn("invalid user profile invalidate message: {}", message);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> getValueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+}
@@ -0,0 +1,397 @@
+package com.fdt.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fdt.mapper.UserMapper;
+import com.fdt.model.domain.User;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 用户标签倒排索引
+ * 标签 -> 有序用户id数组，启动时根据 user.tags 列构建，注册、更新用户时增量维护
+ * 按标签搜索用户时只需要对倒排表求交集，不再全表扫描和逐行解析json
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class UserTagIndexManager {
+
+    /**
+     * 构建索引时每批读取的用户数
+     */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private static final Type TAG_SET_TYPE = new TypeToken<Set<String>>() {
+    }.getType();
+
+    @Resource
+    private UserMapper userMapper;
+
+    private final Gson gson = new Gson();
+
+    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+    /**
+     * 标签 -> 有序用户id列表
+     */
+    private Map<String, PostingList> tagPostingMap = new HashMap<>();
+
+    /**
+     * 用户id -> 标签集合，更新标签时用来删除旧的倒排项
+     */
+    private Map<Long, Set<String>> userTagsMap = new HashMap<>();
+
+    /**
+     * 重建索引期间发生的标签变更，重建完成后重放，防止被旧快照覆盖
+     */
+    private final Map<Long, String> pendingChangeMap = new LinkedHashMap<>();
+
+    private boolean rebuilding = false;
+
+    private volatile boolean ready = false;
+
+    /**
+     * 应用启动完成后构建索引，构建完成前搜索会走原来的内存过滤
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("build user tag index error", e);
+        }
+    }
+
+    /**
+     * 全量重建索引
+     * 按id分批读取 id、tags 两列，避免一次性加载整张用户表
+     */
+    public void rebuild() {
+        rwLock.writeLock().lock();
+        try {
+            rebuilding = true;
+            pendingChangeMap.clear();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        Map<String, PostingList> newTagPostingMap = new HashMap<>();
+        Map<Long, Set<String>> newUserTagsMap = new HashMap<>();
+        long lastId = 0;
+        long startTime = System.currentTimeMillis();
+        try {
+            while (true) {
+                QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("id", "tags");
+                queryWrapper.isNotNull("tags");
+                queryWrapper.gt("id", lastId);
+                queryWrapper.orderByAsc("id");
+                queryWrapper.last("limit " + LOAD_BATCH_SIZE);
+                List<User> userList = userMapper.selectList(queryWrapper);
+                for (User user : userList) {
+                    addUser(newTagPostingMap, newUserTagsMap, user.getId(), parseTags(user.getTags()));
+                }
+                if (userList.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+                lastId = userList.get(userList.size() - 1).getId();
+            }
+        } catch (RuntimeException e) {
+            rwLock.writeLock().lock();
+            try {
+                rebuilding = false;
+                pendingChangeMap.clear();
+            } finally {
+                rwLock.writeLock().unlock();
+            }
+            throw e;
+        }
+        rwLock.writeLock().lock();
+        try {
+            tagPostingMap = newTagPostingMap;
+            userTagsMap = newUserTagsMap;
+            //重放重建期间的变更
+            for (Map.Entry<Long, String> entry : pendingChangeMap.entrySet()) {
+                removeUser(tagPostingMap, userTagsMap, entry.getKey());
+                addUser(tagPostingMap, userTagsMap, entry.getKey(), parseTags(entry.getValue()));
+            }
+            pendingChangeMap.clear();
+            rebuilding = false;
+            ready = true;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        log.info("user tag index built, users={}, tags={}, cost={}ms",
+                newUserTagsMap.size(), newTagPostingMap.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 索引是否可用
+     *
+     * @return boolean
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 更新用户的标签
+     *
+     * @param userId   用户id
+     * @param tagsJson json格式的标签列表，为空表示用户没有标签
+     */
+    public void updateUserTags(long userId, String tagsJson) {
+        Set<String> tagSet = parseTags(tagsJson);
+        rwLock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingChangeMap.put(userId, tagsJson);
+            }
+            removeUser(tagPostingMap, userTagsMap, userId);
+            addUser(tagPostingMap, userTagsMap, userId, tagSet);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从索引中移除用户
+     *
+     * @param userId 用户id
+     */
+    public void removeUser(long userId) {
+        updateUserTags(userId, null);
+    }
+
+    /**
+     * 获取用户当前的标签
+     *
+     * @param userId 用户id
+     * @return Set<String> 标签集合，不存在返回空集合
+     */
+    public Set<String> getUserTags(long userId) {
+        rwLock.readLock().lock();
+        try {
+            Set<String> tagSet = userTagsMap.get(userId);
+            return tagSet == null ? Collections.emptySet() : new HashSet<>(tagSet);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询拥有全部标签的用户id
+     * 从最短的倒排表开始，依次在其他倒排表中二分查找求交集
+     *
+     * @param tagNameList 标签列表
+     * @return long[] 升序的用户id
+     */
+    public long[] searchUserIds(Collection<String> tagNameList) {
+        if (tagNameList == null || tagNameList.isEmpty()) {
+            return new long[0];
+        }
+        rwLock.readLock().lock();
+        try {
+            List<PostingList> postingLists = new ArrayList<>();
+            for (String tagName : new HashSet<>(tagNameList)) {
+                PostingList postingList = tagPostingMap.get(tagName);
+                //有一个标签没人有，交集必然为空
+                if (postingList == null || postingList.size == 0) {
+                    return new long[0];
+                }
+                postingLists.add(postingList);
+            }
+            postingLists.sort(Comparator.comparingInt(postingList -> postingList.size));
+            PostingList shortest = postingLists.get(0);
+            long[] result = Arrays.copyOf(shortest.ids, shortest.size);
+            int length = result.length;
+            for (int i = 1; i < postingLists.size() && length > 0; i++) {
+                length = intersect(result, length, postingLists.get(i));
+            }
+            return Arrays.copyOf(result, length);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询拥有任意一个标签的用户id
+     *
+     * @param tagNameList 标签列表
+     * @return long[] 升序的用户id
+     */
+    public long[] searchUserIdsByAnyTag(Collection<String> tagNameList) {
+        if (tagNameList == null || tagNameList.isEmpty()) {
+            return new long[0];
+        }
+        rwLock.readLock().lock();
+        try {
+            long[] result = new long[0];
+            for (String tagName : new HashSet<>(tagNameList)) {
+                PostingList postingList = tagPostingMap.get(tagName);
+                if (postingList != null && postingList.size > 0) {
+                    result = union(result, postingList.ids, postingList.size);
+                }
+            }
+            return result;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将 result[0, length) 与倒排表求交集，结果原地写回 result
+     *
+     * @return int 交集长度
+     */
+    private static int intersect(long[] result, int length, PostingList postingList) {
+        int newLength = 0;
+        int low = 0;
+        for (int i = 0; i < length && low < postingList.size; i++) {
+            int pos = Arrays.binarySearch(postingList.ids, low, postingList.size, result[i]);
+            if (pos >= 0) {
+                result[newLength++] = result[i];
+                low = pos + 1;
+            } else {
+                //两边都是升序的，下一次从插入点开始查找
+                low = -pos - 1;
+            }
+        }
+        return newLength;
+    }
+
+    /**
+     * 合并两个升序数组
+     */
+    private static long[] union(long[] a, long[] b, int bLength) {
+        long[] result = new long[a.length + bLength];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < bLength) {
+            if (a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[k++] = a[i++];
+        }
+        while (j < bLength) {
+            result[k++] = b[j++];
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    private static void addUser(Map<String, PostingList> tagPostingMap, Map<Long, Set<String>> userTagsMap,
+                                long userId, Set<String> tagSet) {
+        if (tagSet.isEmpty()) {
+            return;
+        }
+        Set<String> internedTagSet = new HashSet<>(tagSet.size() * 2);
+        for (String tagName : tagSet) {
+            PostingList postingList = tagPostingMap.get(tagName);
+            if (postingList == null) {
+                postingList = new PostingList(tagName);
+                tagPostingMap.put(tagName, postingList);
+            }
+            postingList.add(userId);
+            //复用倒排表里的标签字符串，避免每个用户各存一份
+            internedTagSet.add(postingList.tagName);
+        }
+        userTagsMap.put(userId, internedTagSet);
+    }
+
+    private static void removeUser(Map<String, PostingList> tagPostingMap, Map<Long, Set<String>> userTagsMap,
+                                   long userId) {
+        Set<String> oldTagSet = userTagsMap.remove(userId);
+        if (oldTagSet == null) {
+            return;
+        }
+        for (String tagName : oldTagSet) {
+            PostingList postingList = tagPostingMap.get(tagName);
+            if (postingList == null) {
+                continue;
+            }
+            postingList.remove(userId);
+            if (postingList.size == 0) {
+                tagPostingMap.remove(tagName);
+            }
+        }
+    }
+
+    private Set<String> parseTags(String tagsJson) {
+        if (StringUtils.isBlank(tagsJson)) {
+            return Collections.emptySet();
+        }
+        try {
+            Set<String> tagSet = gson.fromJson(tagsJson, TAG_SET_TYPE);
+            return tagSet == null ? Collections.emptySet() : tagSet;
+        } catch (JsonSyntaxException e) {
+            log.warn("parse user tags error, tags={}", tagsJson);
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * 倒排表，用户id按升序存放在原始long数组中
+     */
+    private static class PostingList {
+
+        private final String tagName;
+
+        private long[] ids = new long[4];
+
+        private int size = 0;
+
+        private PostingList(String tagName) {
+            this.tagName = tagName;
+        }
+
+        private void add(long userId) {
+            //构建时id是递增读入的，直接追加到末尾
+            if (size == 0 || ids[size - 1] < userId) {
+                ensureCapacity();
+                ids[size++] = userId;
+                return;
+            }
+            int pos = Arrays.binarySearch(ids, 0, size, userId);
+            if (pos >= 0) {
+                return;
+            }
+            int insertPos = -pos - 1;
+            ensureCapacity();
+            System.arraycopy(ids, insertPos, ids, insertPos + 1, size - insertPos);
+            ids[insertPos] = userId;
+            size++;
+        }
+
+        private void remove(long userId) {
+            int pos = Arrays.binarySearch(ids, 0, size, userId);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.fdt.manager;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 用户标签变化的多节点同步
+ * 标签倒排索引和匹配引擎都在各节点内存中，修改时先更新本节点，再通过redis发布订阅通知其他节点更新
+ * 消息丢失时其他节点的数据要等定时重建才会修正，预计算任务计算前会从mysql重新加载变化用户的标签
+ *
+ * @author fdt
+ */
+@Component
+@Slf4j
+public class UserTagSyncManager {
+
+    /**
+     * 标签变化通知的频道
+     */
+    private static final String TAG_CHANGE_CHANNEL = "yupao:user:tags:change";
+
+    @Resource
+    private UserTagIndexManager userTagIndexManager;
+
+    @Resource
+    private UserMatchEngine userMatchEngine;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 当前节点的标识，收到自己发出的通知时不处理
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Gson gson = new Gson();
+
+    /**
+     * 标签变化通知
+     */
+    @Data
+    private static class TagChangeMessage {
+
+        private String nodeId;
+
+        private long userId;
+
+        /**
+         * json格式的标签列表，为空表示用户没有标签
+         */
+        private String tags;
+
+        /**
+         * 用户是否已删除
+         */
+        private boolean removed;
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(
+                (Message message, byte[] pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TAG_CHANGE_CHANNEL));
+    }
+
+    /**
+     * 更新用户标签，本节点立即生效，其他节点收到通知后生效
+     *
+     * @param userId   用户id
+     * @param tagsJson json格式的标签列表
+     */
+    public void updateUserTags(long userId, String tagsJson) {
+        applyLocal(userId, tagsJson);
+        publish(userId, tagsJson, false);
+    }
+
+    /**
+     * 从所有节点的标签索引和匹配引擎中移除用户
+     *
+     * @param userId 用户id
+     */
+    public void removeUser(long userId) {
+        removeLocal(userId);
+        publish(userId, null, true);
+    }
+
+    /**
+     * 只更新本节点的标签索引和匹配引擎，不通知其他节点
+     *
+     * @param userId   用户id
+     * @param tagsJson json格式的标签列表
+     */
+    public void applyLocal(long userId, String tagsJson) {
+        userTagIndexManager.updateUserTags(userId, tagsJson);
+        userMatchEngine.updateUserTags(userId, tagsJson);
+    }
+
+    /**
+     * 只从本节点的标签索引和匹配引擎中移除用户，不通知其他节点
+     *
+     * @param userId 用户id
+     */
+    public void removeLocal(long userId) {
+        userTagIndexManager.removeUser(userId);
+        userMatchEngine.removeUser(userId);
+    }
+
+    private void publish(long userId, String tagsJson, boolean removed) {
+        TagChangeMessage tagChangeMessage = new TagChangeMessage();
+        tagChangeMessage.setNodeId(nodeId);
+        tagChangeMessage.setUserId(userId);
+        tagChangeMessage.setTags(tagsJson);
+        tagChangeMessage.setRemoved(removed);
+        try {
+            stringRedisTemplate.convertAndSend(TAG_CHANGE_CHANNEL, gson.toJson(tagChangeMessage));
+        } catch (Exception e) {
+            log.error("publish user tag change error, userId={}", userId, e);
+        }
+    }
+
+    private void onMessage(String message) {
+        TagChangeMessage tagChangeMessage;
+        try {
+            tagChangeMessage = gson.fromJson(message, TagChangeMessage.class);
+        } catch (JsonSyntaxException e) {
+            log.warn("invalid user tag change message: {}", message);
+            return;
+        }
+        if (tagChangeMessage == null || nodeId.equals(tagChangeMessage.getNodeId())) {
+            return;
+        }
+        if (tagChangeMessage.isRemoved()) {
+            removeLocal(tagChangeMessage.getUserId());
+        } else {
+            applyLocal(tagChangeMessage.getUserId(), tagChangeMessage.getTags());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fdt.mapper;
+
+import com.fdt.model.domain.Tag;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+
+/**
+* @author 冯德田
+* @description 针对表【tag(标签)】的数据库操作Mapper
+* @Entity com.fdt.model.domain.Tag
+*/
+public interface TagMapper extends BaseMapper<Tag> {
+
+    /**
+     * 批量插入标签，已存在的标签名忽略
+     * @param tagNames 标签名称
+     * @return int 插入条数
+     */
+    int insertIgnoreBatch(@Param("tagNames") Collection<String> tagNames);
+}
+
+
+
+
@@ -2,6 +2,7 @@ package com.fdt.mapper;
 
 import com.fdt.model.domain.Team;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
 * @author 冯德田
@@ -11,6 +12,11 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface TeamMapper extends BaseMapper<Team> {
 
+    /**
+     * 流式导出队伍，按id升序，每读到一行调用一次resultHandler
+     * @param resultHandler 行处理器
+     */
+    void exportTeams(ResultHandler<Team> resultHandler);
 }
 
 
@@ -2,6 +2,11 @@ package com.fdt.mapper;
 
 import com.fdt.model.domain.TeamUser;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fdt.model.dto.TeamJoinCount;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
 * @author 冯德田
@@ -11,6 +16,34 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface TeamUserMapper extends BaseMapper<TeamUser> {
 
+    /**
+     * 按队伍分组统计已加入人数，同时标记用户是否加入了该队伍
+     * @param teamIds 队伍id
+     * @param userId 用户id，为空时不标记
+     * @return List<TeamJoinCount> 有成员的队伍的统计结果
+     */
+    List<TeamJoinCount> listTeamJoinCount(@Param("teamIds") Collection<Long> teamIds, @Param("userId") Long userId);
+
+    /**
+     * 批量插入成员关系（多行insert）
+     * @param teamUserList 成员关系，使用teamId、userId、joinTime
+     * @return int 插入的行数
+     */
+    int insertBatch(@Param("teamUserList") List<TeamUser> teamUserList);
+
+    /**
+     * 按 (teamId, userId) 批量逻辑删除成员关系
+     * @param teamUserList 成员关系，使用teamId、userId
+     * @return int 删除的行数
+     */
+    int deleteBatchByPair(@Param("teamUserList") List<TeamUser> teamUserList);
+
+    /**
+     * 按 (teamId, userId) 批量查询已存在的成员关系
+     * @param teamUserList 成员关系，使用teamId、userId
+     * @return List<TeamUser> 已存在的关系，只有teamId和userId
+     */
+    List<TeamUser> listByPair(@Param("teamUserList") List<TeamUser> teamUserList);
 }
 
 
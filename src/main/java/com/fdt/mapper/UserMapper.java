@@ -3,6 +3,11 @@ package com.fdt.mapper;
 import com.fdt.model.domain.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
 
 /**
 * @author 冯德田
@@ -13,6 +18,37 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
 
+    /**
+     * 流式读取id大于lastId的用户的id和tags，按id升序
+     * 需要在打开的SqlSession中遍历，遍历完成后关闭
+     * @param lastId 上次处理到的用户id
+     * @return Cursor<User> 用户游标
+     */
+    Cursor<User> streamUserTags(@Param("lastId") long lastId);
+
+    /**
+     * 流式导出脱敏后的用户，按id升序，每读到一行调用一次resultHandler
+     * @param username 用户昵称（模糊匹配），为空时导出全部
+     * @param resultHandler 行处理器
+     */
+    void exportUsers(@Param("username") String username, ResultHandler<User> resultHandler);
+
+    /**
+     * 批量插入用户（多行insert），只插入昵称、账号、密码和星球编号，其他列用默认值
+     * 账号或星球编号已存在的行由 on duplicate key update id = id 跳过，其他错误（超长、类型不对）照常报错
+     * @param userList 用户列表，不能为空
+     * @return int 影响的行数（连接默认返回匹配行数，跳过的行也计算在内）
+     */
+    int insertBatch(@Param("userList") List<User> userList);
+
+    /**
+     * 查询账号或星球编号已存在的用户，包括已删除的用户（唯一索引也包括它们）
+     * @param userAccounts 账号列表，不能为空
+     * @param planetCodes 星球编号列表，不能为空
+     * @return List<User> 只有账号和星球编号
+     */
+    List<User> listByAccountsOrPlanetCodes(@Param("userAccounts") List<String> userAccounts,
+                                           @Param("planetCodes") List<String> planetCodes);
 }
 
 
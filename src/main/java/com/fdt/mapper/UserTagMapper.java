@@ -0,0 +1,35 @@
+package com.fdt.mapper;
+
+import com.fdt.model.domain.UserTag;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+* @author 冯德田
+* @description 针对表【user_tag(用户标签关系)】的数据库操作Mapper
+* @Entity com.fdt.model.domain.UserTag
+*/
+public interface UserTagMapper extends BaseMapper<UserTag> {
+
+    /**
+     * 批量插入用户标签关系，已存在的关系忽略
+     * @param userTagList 关系列表
+     * @return int 插入条数
+     */
+    int insertIgnoreBatch(@Param("list") List<UserTag> userTagList);
+
+    /**
+     * 查询拥有全部标签的用户id（user_tag 与 tag 连接，走标签名和关系表索引）
+     * @param tagNames 标签名称（不重复）
+     * @param tagCount 标签个数
+     * @return List<Long> 用户id列表
+     */
+    List<Long> listUserIdsByTagNames(@Param("tagNames") Collection<String> tagNames, @Param("tagCount") int tagCount);
+}
+
+
+
+
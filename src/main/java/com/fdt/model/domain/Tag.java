@@ -0,0 +1,67 @@
+package com.fdt.model.domain;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 标签
+ * @TableName tag
+ */
+@TableName(value ="tag")
+@Data
+public class Tag implements Serializable {
+    /**
+     * id
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 标签名称
+     */
+    @TableField(value = "tagName")
+    private String tagName;
+
+    /**
+     * 上传标签的用户id
+     */
+    @TableField(value = "userId")
+    private Long userId;
+
+    /**
+     * 父标签id
+     */
+    @TableField(value = "parentId")
+    private Long parentId;
+
+    /**
+     * 是否为父标签 0-否 1-是
+     */
+    @TableField(value = "isParent")
+    private Integer isParent;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "createTime")
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updateTime")
+    private Date updateTime;
+
+    /**
+     * 是否删除 0-不删除 1-删除
+     */
+    @TableField(value = "isDelete")
+    @TableLogic
+    private Integer isDelete;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
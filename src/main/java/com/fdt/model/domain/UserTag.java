@@ -0,0 +1,45 @@
+package com.fdt.model.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 用户标签关系
+ * 关系数据由 user.tags 派生，没有逻辑删除字段，删除时直接物理删除
+ * @TableName user_tag
+ */
+@TableName(value ="user_tag")
+@Data
+public class UserTag implements Serializable {
+    /**
+     * id
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 用户id
+     */
+    @TableField(value = "userId")
+    private Long userId;
+
+    /**
+     * 标签id
+     */
+    @TableField(value = "tagId")
+    private Long tagId;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "createTime")
+    private Date createTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
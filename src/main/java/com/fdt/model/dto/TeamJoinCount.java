@@ -0,0 +1,30 @@
+package com.fdt.model.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 队伍加入人数统计
+ * @author fdt
+ */
+@Data
+public class TeamJoinCount implements Serializable {
+
+    private static final long serialVersionUID = -3268514037528812946L;
+
+    /**
+     * 队伍id
+     */
+    private Long teamId;
+
+    /**
+     * 已加入用户的数量
+     */
+    private Integer hasJoinNum;
+
+    /**
+     * 当前用户是否加入队伍
+     */
+    private Boolean hasJoin;
+}
@@ -0,0 +1,59 @@
+package com.fdt.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果
+ * 查询时按id升序多查一条（limit pageSize + 1），多出来的那条说明还有下一页
+ * @author fdt
+ */
+@Data
+public class CursorPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 2917548365021473590L;
+
+    /**
+     * 本页数据
+     */
+    private List<T> records;
+
+    /**
+     * 下一页的游标（本页最后一条数据的id），没有下一页时为null
+     */
+    private Long nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 总数，没有要求查询总数时为null
+     */
+    private Long total;
+
+    /**
+     * 根据多查一条的查询结果构造分页结果
+     *
+     * @param rows     按id升序、最多 pageSize + 1 条的查询结果
+     * @param pageSize 每页条数
+     * @param idGetter 获取id的方法
+     * @return CursorPage<T> 分页结果
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize, Function<T, Long> idGetter) {
+        CursorPage<T> cursorPage = new CursorPage<>();
+        boolean hasMore = rows.size() > pageSize;
+        List<T> records = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        cursorPage.setRecords(records);
+        cursorPage.setHasMore(hasMore);
+        if (hasMore) {
+            cursorPage.setNextCursor(idGetter.apply(records.get(records.size() - 1)));
+        }
+        return cursorPage;
+    }
+}
@@ -0,0 +1,83 @@
+package com.fdt.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 用户导入进度
+ *
+ * @author fdt
+ */
+@Data
+public class UserImportProgressVO implements Serializable {
+
+    private static final long serialVersionUID = 4213620987715362189L;
+
+    /**
+     * 导入任务id
+     */
+    private String taskId;
+
+    /**
+     * 导入的文件名
+     */
+    private String fileName;
+
+    /**
+     * 任务状态 running-导入中 finished-已完成 failed-失败
+     */
+    private String status;
+
+    /**
+     * 已读取的行数
+     */
+    private long readRows;
+
+    /**
+     * 已插入的行数
+     */
+    private long insertedRows;
+
+    /**
+     * 星球编号或账号重复而跳过的行数（文件内重复和库中已存在）
+     */
+    private long duplicateRows;
+
+    /**
+     * 数据不合法而跳过的行数
+     */
+    private long invalidRows;
+
+    /**
+     * 不合法行的行号和原因（最多100条）
+     */
+    private List<String> rejectedRows;
+
+    /**
+     * 插入失败的行数
+     */
+    private long failedRows;
+
+    /**
+     * 每秒插入的行数
+     */
+    private long rowsPerSecond;
+
+    /**
+     * 开始时间
+     */
+    private Date startTime;
+
+    /**
+     * 结束时间
+     */
+    private Date endTime;
+
+    /**
+     * 失败原因
+     */
+    private String errorMessage;
+}
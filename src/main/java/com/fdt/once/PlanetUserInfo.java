@@ -18,4 +18,10 @@ public class PlanetUserInfo {
      */
     @ExcelProperty("用户昵称")
     private String username;
+
+    /**
+     * 账号，表格中没有这一列时用星球编号生成
+     */
+    @ExcelProperty("用户账号")
+    private String userAccount;
 }
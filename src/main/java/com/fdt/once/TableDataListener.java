@@ -1,32 +0,0 @@
-package com.fdt.once;
-
-import com.alibaba.excel.context.AnalysisContext;
-import com.alibaba.excel.read.listener.ReadListener;
-import lombok.extern.slf4j.Slf4j;
-
-// 有个很重要的点 DemoDataListener 不能被spring管理，要每次读取excel都要new,然后里面用到spring可以构造方法传进去
-@Slf4j
-public class TableDataListener implements ReadListener<PlanetUserInfo> {
-
-    /**
-     * 这个每一条数据解析都会来调用
-     *
-     * @param data    one row value. Is is same as {@link AnalysisContext#readRowHolder()}
-     * @param context
-     */
-    @Override
-    public void invoke(PlanetUserInfo data, AnalysisContext context) {
-        log.info(String.valueOf(data));
-    }
-
-    /**
-     * 所有数据解析完成了 都会来调用
-     *
-     * @param context
-     */
-    @Override
-    public void doAfterAllAnalysed(AnalysisContext context) {
-        log.info("所有数据解析完成！context=",context);
-    }
-
-}
@@ -0,0 +1,194 @@
+package com.fdt.once;
+
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.read.listener.ReadListener;
+import com.fdt.model.domain.User;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static com.fdt.contant.UserContant.UNUSABLE_PASSWORD;
+
+// 用户导入的读取监听器，EasyExcel每解析一行调用一次invoke，攒够一批交给batchConsumer插入
+// 和EasyExcel的要求一样，不能被spring管理，每次导入都要new
+@Slf4j
+public class UserImportListener implements ReadListener<PlanetUserInfo> {
+
+    /**
+     * 星球编号最大长度，和注册时的校验一致
+     */
+    private static final int MAX_PLANET_CODE_LENGTH = 5;
+
+    /**
+     * 表格中没有账号时，用前缀加星球编号作为账号
+     */
+    private static final String ACCOUNT_PREFIX = "planet";
+
+    /**
+     * 账号最小长度和允许的字符，和注册时的校验一致
+     */
+    private static final int MIN_ACCOUNT_LENGTH = 4;
+
+    private static final Pattern ACCOUNT_PATTERN = Pattern.compile("^[a-zA-Z0-9]+$");
+
+    /**
+     * 账号和昵称的最大长度，和表结构一致，超长的值不能插入
+     */
+    private static final int MAX_ACCOUNT_LENGTH = 256;
+
+    private static final int MAX_USERNAME_LENGTH = 256;
+
+    /**
+     * 最多记录多少条不合法行的原因
+     */
+    private static final int MAX_REJECTED_ROWS = 100;
+
+    private final int batchSize;
+
+    private final Consumer<List<User>> batchConsumer;
+
+    //文件内已经出现过的星球编号和账号，文件内的重复行只保留第一行
+    private final Set<String> planetCodeSet = new HashSet<>();
+
+    private final Set<String> userAccountSet = new HashSet<>();
+
+    //不合法行的行号和原因，读取线程写入，查询进度的线程读取
+    private final List<String> rejectedRowList = Collections.synchronizedList(new ArrayList<>());
+
+    private List<User> batchUserList;
+
+    //只在读取线程中修改，查询进度的线程只读
+    private volatile long readRows = 0;
+
+    private volatile long invalidRows = 0;
+
+    private volatile long duplicateRows = 0;
+
+    /**
+     * @param batchSize     每批的行数
+     * @param batchConsumer 处理一批用户，在读取线程中调用
+     */
+    public UserImportListener(int batchSize, Consumer<List<User>> batchConsumer) {
+        this.batchSize = batchSize;
+        this.batchConsumer = batchConsumer;
+        this.batchUserList = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * 这个每一条数据解析都会来调用
+     *
+     * @param data    one row value. Is is same as {@link AnalysisContext#readRowHolder()}
+     * @param context
+     */
+    @Override
+    public void invoke(PlanetUserInfo data, AnalysisContext context) {
+        readRows++;
+        String planetCode = StringUtils.trim(data.getPlanetCode());
+        String userAccount = StringUtils.trim(data.getUserAccount());
+        if (StringUtils.isBlank(userAccount) && StringUtils.isNotBlank(planetCode)) {
+            userAccount = ACCOUNT_PREFIX + planetCode;
+        }
+        String username = StringUtils.trim(data.getUsername());
+        String rejectReason = validate(planetCode, userAccount, username);
+        if (rejectReason != null) {
+            invalidRows++;
+            if (rejectedRowList.size() < MAX_REJECTED_ROWS) {
+                //行号从0开始并包含表头，加1和excel中显示的行号一致
+                rejectedRowList.add("第" + (context.readRowHolder().getRowIndex() + 1) + "行：" + rejectReason);
+            }
+            return;
+        }
+        if (planetCodeSet.contains(planetCode) || userAccountSet.contains(userAccount)) {
+            duplicateRows++;
+            return;
+        }
+        planetCodeSet.add(planetCode);
+        userAccountSet.add(userAccount);
+        User user = new User();
+        user.setUsername(username);
+        user.setUserAccount(userAccount);
+        //不设置共用的初始密码，导入的用户设置密码后才能登录
+        user.setUserPassword(UNUSABLE_PASSWORD);
+        user.setPlanetCode(planetCode);
+        batchUserList.add(user);
+        if (batchUserList.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 所有数据解析完成了 都会来调用
+     *
+     * @param context
+     */
+    @Override
+    public void doAfterAllAnalysed(AnalysisContext context) {
+        flush();
+        log.info("用户导入文件解析完成，不重复的星球编号数={}", planetCodeSet.size());
+    }
+
+    public long getReadRows() {
+        return readRows;
+    }
+
+    public long getInvalidRows() {
+        return invalidRows;
+    }
+
+    /**
+     * @return List<String> 不合法行的行号和原因，最多 MAX_REJECTED_ROWS 条
+     */
+    public List<String> getRejectedRows() {
+        synchronized (rejectedRowList) {
+            return new ArrayList<>(rejectedRowList);
+        }
+    }
+
+    /**
+     * @return long 文件内重复的行数
+     */
+    public long getDuplicateRows() {
+        return duplicateRows;
+    }
+
+    /**
+     * 校验一行数据，规则和注册时一致，插入时不会被截断或转换
+     *
+     * @return String 不合法的原因，合法时返回null
+     */
+    private static String validate(String planetCode, String userAccount, String username) {
+        if (StringUtils.isBlank(planetCode)) {
+            return "星球编号为空";
+        }
+        if (planetCode.length() > MAX_PLANET_CODE_LENGTH) {
+            return "星球编号长度不大于" + MAX_PLANET_CODE_LENGTH + "位";
+        }
+        if (userAccount.length() < MIN_ACCOUNT_LENGTH || userAccount.length() > MAX_ACCOUNT_LENGTH) {
+            return "账号长度应在" + MIN_ACCOUNT_LENGTH + "到" + MAX_ACCOUNT_LENGTH + "位之间";
+        }
+        if (!ACCOUNT_PATTERN.matcher(userAccount).matches()) {
+            return "账号不能包含特殊字符";
+        }
+        if (username != null && username.length() > MAX_USERNAME_LENGTH) {
+            return "用户昵称长度不大于" + MAX_USERNAME_LENGTH + "位";
+        }
+        return null;
+    }
+
+    private void flush() {
+        if (batchUserList.isEmpty()) {
+            return;
+        }
+        //交出去的列表会在其他线程使用，这里换一个新列表
+        List<User> userList = batchUserList;
+        batchUserList = new ArrayList<>(batchSize);
+        batchConsumer.accept(userList);
+    }
+}
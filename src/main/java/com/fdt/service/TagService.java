@@ -0,0 +1,21 @@
+package com.fdt.service;
+
+import com.fdt.model.domain.Tag;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+* @author 冯德田
+* @description 针对表【tag(标签)】的数据库操作Service
+*/
+public interface TagService extends IService<Tag> {
+
+    /**
+     * 获取标签名称对应的标签id，不存在的标签会先创建
+     * @param tagNames 标签名称
+     * @return Map<String, Long> 标签名称 -> 标签id
+     */
+    Map<String, Long> getOrCreateTagIds(Collection<String> tagNames);
+}
@@ -8,7 +8,9 @@ import com.fdt.model.request.TeamAddRequest;
 import com.fdt.model.request.TeamJoinRequest;
 import com.fdt.model.request.TeamQuitRequest;
 import com.fdt.model.request.TeamUpdateRequest;
+import com.fdt.model.vo.CursorPage;
 import com.fdt.model.vo.TeamUserVO;
+import com.fdt.utils.ExportWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
@@ -75,5 +77,30 @@ public interface TeamService extends IService<Team> {
      */
     List<TeamUserVO> flagUserJoinedTeams(List<TeamUserVO> originTeamList, HttpServletRequest request);
 
+    /**
+     * 游标分页查询队伍，按id升序，不返回队伍密码，非管理员查不到私有队伍
+     * @param teamQuery 队伍查询请求体（afterId为游标，needTotal为是否查询总数）
+     * @param isAdmin 是否为管理员
+     * @return CursorPage<Team> 队伍分页
+     */
+    CursorPage<Team> listTeamsByCursor(TeamQuery teamQuery, boolean isAdmin);
+
+    /**
+     * 列表接口返回的队伍列，不包含密码
+     */
+    String[] TEAM_SAFE_COLUMNS = {"id", "name", "description", "maxNum", "expireTime", "userId", "status", "createTime", "updateTime"};
+
+    /**
+     * 导出队伍时的列，和写出的值一一对应
+     */
+    String[] TEAM_EXPORT_COLUMNS = {"id", "name", "description", "maxNum", "expireTime", "userId", "status", "createTime"};
+
+    /**
+     * 流式导出队伍（不含密码），内存占用和导出行数无关
+     * @param exportWriter 导出写入器
+     * @return long 导出的行数
+     */
+    long exportTeams(ExportWriter exportWriter);
+
 
 }
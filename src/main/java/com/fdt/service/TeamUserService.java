@@ -2,6 +2,10 @@ package com.fdt.service;
 
 import com.fdt.model.domain.TeamUser;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.fdt.model.dto.TeamJoinCount;
+
+import java.util.Collection;
+import java.util.Map;
 
 /**
 * @author 冯德田
@@ -10,4 +14,11 @@ import com.baomidou.mybatisplus.extension.service.IService;
 */
 public interface TeamUserService extends IService<TeamUser> {
 
+    /**
+     * 一次查询统计各队伍的已加入人数，并标记用户是否已加入
+     * @param teamIds 队伍id
+     * @param userId 用户id，未登录时为空
+     * @return Map<Long, TeamJoinCount> 队伍id -> 统计结果，没有成员的队伍不在结果中
+     */
+    Map<Long, TeamJoinCount> getTeamJoinCountMap(Collection<Long> teamIds, Long userId);
 }
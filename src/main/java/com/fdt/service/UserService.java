@@ -1,6 +1,9 @@
 package com.fdt.service;
 
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fdt.model.domain.User;
+import com.fdt.model.vo.CursorPage;
+import com.fdt.utils.ExportWriter;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import javax.servlet.http.HttpServletRequest;
@@ -40,6 +43,20 @@ public interface UserService extends IService<User> {
      */
     User getSafetyUser(User orginUser);
 
+    /**
+     * 根据id获取脱敏后的用户信息，读用户资料缓存
+     * @param userId 用户id
+     * @return 脱敏后的用户信息，用户不存在时返回null
+     */
+    User getSafetyUserById(long userId);
+
+    /**
+     * 密码加密
+     * @param userPassword 明文密码
+     * @return String 加密后的密码
+     */
+    String encryptPassword(String userPassword);
+
     /**
      * 根据标签搜索用户
      * @param tagNameList 标签列表
@@ -61,6 +78,13 @@ public interface UserService extends IService<User> {
      */
     int updateUser(User user,User loginUser);
 
+    /**
+     * 删除用户
+     * @param userId 用户id
+     * @return boolean 是否删除成功
+     */
+    boolean deleteUser(long userId);
+
     /**
      * 获取当前登录用户
      * @param request 请求信息
@@ -68,6 +92,13 @@ public interface UserService extends IService<User> {
      */
     User getLoginUser(HttpServletRequest request);
 
+    /**
+     * 获取当前登录用户，未登录时返回null
+     * @param request 请求信息
+     * @return User 当前登录用户信息
+     */
+    User getLoginUserPermitNull(HttpServletRequest request);
+
     boolean isAdmin(HttpServletRequest request);
 
     boolean isAdmin(User loginUser);
@@ -76,6 +107,46 @@ public interface UserService extends IService<User> {
 
     Object getRedisCache(String key);
 
+    /**
+     * 分页获取推荐用户，优先读缓存；缓存未命中时同一个键只有一个请求查库
+     * @param pageNum 页码
+     * @param pageSize 每页条数
+     * @param userId 登录用户id
+     * @return Page<User> 脱敏后的推荐用户分页
+     */
+    Page<User> recommendUsers(long pageNum, long pageSize, long userId);
+
+    /**
+     * 查库获取推荐用户（不读写缓存）
+     * @param pageNum 页码
+     * @param pageSize 每页条数
+     * @return Page<User> 脱敏后的推荐用户分页
+     */
+    Page<User> loadRecommendUsers(long pageNum, long pageSize);
+
+    /**
+     * 游标分页获取推荐用户，按id升序，翻到多深耗时都一样
+     * @param afterId 上一页的游标，为空表示第一页
+     * @param pageSize 每页条数
+     * @param needTotal 是否查询总数
+     * @return CursorPage<User> 脱敏后的推荐用户
+     */
+    CursorPage<User> recommendUsersByCursor(Long afterId, int pageSize, boolean needTotal);
+
+    /**
+     * 导出用户时的列，和写出的值一一对应
+     */
+    String[] USER_EXPORT_COLUMNS = {"id", "username", "userAccount", "avatarUrl", "gender", "phone", "email",
+            "tags", "userRole", "status", "createTime", "planetCode"};
+
+    /**
+     * 流式导出脱敏后的用户，内存占用和导出行数无关
+     * @param username 用户昵称（模糊匹配），为空时导出全部
+     * @param exportWriter 导出写入器
+     * @return long 导出的行数
+     */
+    long exportUsers(String username, ExportWriter exportWriter);
+
     /**
      * 获取最匹配用户的列表
      * @param num 要获取的数量
@@ -0,0 +1,47 @@
+package com.fdt.service;
+
+import com.fdt.model.domain.User;
+import com.fdt.model.domain.UserTag;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.util.List;
+
+/**
+* @author 冯德田
+* @description 针对表【user_tag(用户标签关系)】的数据库操作Service
+*/
+public interface UserTagService extends IService<UserTag> {
+
+    /**
+     * 根据用户的json标签重建该用户的标签关系
+     * @param userId 用户id
+     * @param tagsJson json格式的标签列表
+     */
+    void syncUserTags(long userId, String tagsJson);
+
+    /**
+     * 批量重建用户的标签关系
+     * @param userList 用户列表（需要包含id和tags）
+     * @return int 写入的关系条数
+     */
+    int syncUserTagsBatch(List<User> userList);
+
+    /**
+     * 查询拥有全部标签的用户id
+     * @param tagNameList 标签列表
+     * @return List<Long> 用户id列表
+     */
+    List<Long> listUserIdsByTagNames(List<String> tagNameList);
+
+    /**
+     * 标签关系是否已经完整回填，回填完成前关系表缺少老用户的数据，不能用来查询
+     * @return boolean
+     */
+    boolean isBackfilled();
+
+    /**
+     * 删除用户的全部标签关系
+     * @param userId 用户id
+     */
+    void removeUserTags(long userId);
+}
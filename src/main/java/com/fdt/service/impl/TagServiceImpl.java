@@ -0,0 +1,63 @@
+package com.fdt.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fdt.model.domain.Tag;
+import com.fdt.service.TagService;
+import com.fdt.mapper.TagMapper;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.*;
+
+/**
+* @author 冯德田
+* @description 针对表【tag(标签)】的数据库操作Service实现
+*/
+@Service
+public class TagServiceImpl extends ServiceImpl<TagMapper, Tag>
+    implements TagService{
+
+    @Resource
+    private TagMapper tagMapper;
+
+    /**
+     * 获取标签名称对应的标签id，不存在的标签会先创建
+     *
+     * @param tagNames 标签名称
+     * @return Map<String, Long> 标签名称 -> 标签id
+     */
+    @Override
+    public Map<String, Long> getOrCreateTagIds(Collection<String> tagNames) {
+        if (tagNames == null || tagNames.isEmpty()) {
+            return new HashMap<>();
+        }
+        Set<String> tagNameSet = new HashSet<>(tagNames);
+        //先查已存在的标签，大部分标签都已存在，不需要写库
+        Map<String, Long> tagIdMap = listTagIds(tagNameSet);
+        if (tagIdMap.size() == tagNameSet.size()) {
+            return tagIdMap;
+        }
+        Set<String> missingTagNameSet = new HashSet<>(tagNameSet);
+        missingTagNameSet.removeAll(tagIdMap.keySet());
+        //标签名有唯一索引，并发插入同名标签时忽略重复的
+        tagMapper.insertIgnoreBatch(missingTagNameSet);
+        tagIdMap.putAll(listTagIds(missingTagNameSet));
+        return tagIdMap;
+    }
+
+    private Map<String, Long> listTagIds(Collection<String> tagNames) {
+        QueryWrapper<Tag> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "tagName");
+        queryWrapper.in("tagName", tagNames);
+        Map<String, Long> tagIdMap = new HashMap<>();
+        for (Tag tag : tagMapper.selectList(queryWrapper)) {
+            tagIdMap.put(tag.getTagName(), tag.getId());
+        }
+        return tagIdMap;
+    }
+}
+
+
+
+
@@ -5,27 +5,40 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fdt.common.ErrorCode;
+import com.fdt.convert.TeamConvert;
 import com.fdt.exception.BusinessException;
+import com.fdt.manager.TeamSeatManager;
+import com.fdt.manager.TeamUserWriteBehind;
+import com.fdt.manager.UserProfileCache;
 import com.fdt.mapper.TeamMapper;
 import com.fdt.model.domain.Team;
 import com.fdt.model.domain.TeamUser;
 import com.fdt.model.domain.User;
+import com.fdt.model.dto.TeamJoinCount;
 import com.fdt.model.dto.TeamQuery;
 import com.fdt.model.enums.TeamStatusEnum;
 import com.fdt.model.request.TeamJoinRequest;
 import com.fdt.model.request.TeamQuitRequest;
 import com.fdt.model.request.TeamUpdateRequest;
+import com.fdt.model.vo.CursorPage;
 import com.fdt.model.vo.TeamUserVO;
 import com.fdt.model.vo.UserVO;
 import com.fdt.service.TeamService;
 import com.fdt.service.TeamUserService;
 import com.fdt.service.UserService;
+import com.fdt.utils.ExportWriter;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
-import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import java.util.*;
@@ -38,6 +51,7 @@ import java.util.stream.Collectors;
  * createDate 2024-08-15 15:30:51
  */
 @Service
+@Slf4j
 public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         implements TeamService {
 
@@ -50,6 +64,52 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
     @Resource
     private RedissonClient redissonClient;
 
+    @Resource
+    private TeamSeatManager teamSeatManager;
+
+    @Resource
+    private UserProfileCache userProfileCache;
+
+    @Resource
+    private TeamUserWriteBehind teamUserWriteBehind;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否使用redis席位计数加入队伍，关闭后走加锁查库
+     */
+    @Value("${yupao.team.seat-counter.enabled:true}")
+    private boolean seatCounterEnabled;
+
+    /**
+     * 加入队伍时队伍维度的锁
+     */
+    private static final String TEAM_JOIN_LOCK_KEY = "yupao:team:join:%s";
+
+    /**
+     * 加入队伍时用户维度的锁
+     */
+    private static final String USER_JOIN_LOCK_KEY = "yupao:team:join:user:%s";
+
+    /**
+     * 加入队伍时等待锁的最长时间
+     */
+    private static final long JOIN_LOCK_WAIT_MILLIS = 3000L;
+
+    /**
+     * 查询队伍列表扫描的行数，启动时注册一次
+     */
+    private DistributionSummary listTeamRowsSummary;
+
+    @PostConstruct
+    public void initMetrics() {
+        listTeamRowsSummary = DistributionSummary.builder("yupao.team.rows.scanned")
+                .tag("method", "listTeam")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     /**
      * 创建队伍
      *
@@ -130,6 +190,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (!result) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "创建队伍失败");
         }
+        teamSeatManager.addMemberAfterCommit(team.getId(), userId);
         return team.getId();
     }
 
@@ -142,6 +203,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      *
      */
     @Override
+    @Timed(value = "yupao.team.list", histogram = true)
     public List<TeamUserVO> listTeam(TeamQuery teamQuery, boolean isAdmin) {
 //        //不能直接查询所有的队伍信息，如果查询条件为空，返回空列表
 //        if (teamQuery.isEmptyExceptPage()) {
@@ -228,22 +290,18 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if (teamList == null) {
             return new ArrayList<>();
         }
-        //关联查询创建人的用户信息
-        List<TeamUserVO> teamUserVOList = new ArrayList<>();
+        listTeamRowsSummary.record(teamList.size());
+        //批量查询创建人的用户信息（脱敏），优先读本地缓存
+        Set<Long> creatorIdSet = teamList.stream().map(Team::getUserId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<Long, UserVO> creatorMap = userProfileCache.getUserVOMap(creatorIdSet);
+        List<TeamUserVO> teamUserVOList = new ArrayList<>(teamList.size());
         for (Team team : teamList){
             userId = team.getUserId();
             if(userId == null){
                 continue;
             }
-            User user = userService.getById(userId);
-            TeamUserVO teamUserVO = new TeamUserVO();
-            BeanUtils.copyProperties(team, teamUserVO);
-            //脱敏用户信息
-            if(user != null){
-                UserVO userVO = new UserVO();
-                BeanUtils.copyProperties(user, userVO);
-                teamUserVO.setCreatedUser(userVO);
-            }
+            TeamUserVO teamUserVO = TeamConvert.INSTANCE.toTeamUserVO(team);
+            teamUserVO.setCreatedUser(creatorMap.get(userId));
             teamUserVOList.add(teamUserVO);
         }
         return teamUserVOList;
@@ -283,10 +341,8 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
                 throw new BusinessException(ErrorCode.PARAMS_ERROR,"加密队伍必须设置密码");
             }
         }
-        Team updateTeam = new Team();
         // todo 比较旧的和要更新的队伍信息，如果有变化则更新
-
-        BeanUtils.copyProperties(TeamUpdateRequest, updateTeam);
+        Team updateTeam = TeamConvert.INSTANCE.toTeam(TeamUpdateRequest);
         return this.updateById(updateTeam);
     }
 
@@ -297,6 +353,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      * @return boolean 加入结果
      */
     @Override
+    @Timed(value = "yupao.team.join", histogram = true)
     public boolean joinTeam(TeamJoinRequest teamJoinRequest, User loginUser) {
         //判断请求体是否为空
         if(teamJoinRequest == null){
@@ -329,47 +386,117 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
             }
         }
         long userId = loginUser.getId();
-        //用户最多加入5个队伍
-        //分布式锁
-        RLock lock = redissonClient.getLock("yupao:team:join");
+        if (seatCounterEnabled) {
+            return joinTeamBySeat(team, userId);
+        }
+        return joinTeamByLock(team, userId);
+    }
+
+    /**
+     * 通过redis席位集合加入队伍：lua脚本原子地校验并占座，占座成功后再写关系表
+     * @param team 队伍
+     * @param userId 用户id
+     * @return boolean 加入结果
+     */
+    private boolean joinTeamBySeat(Team team, long userId) {
+        long teamId = team.getId();
+        TeamSeatManager.SeatResult seatResult = teamSeatManager.reserve(teamId, userId, team.getMaxNum());
+        meterRegistry.counter("yupao.team.seat.reserve", "result", seatResult.name()).increment();
+        if (seatResult == TeamSeatManager.SeatResult.USER_JOIN_LIMIT) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户最多加入5个队伍");
+        }
+        if (seatResult == TeamSeatManager.SeatResult.ALREADY_JOINED) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户已经加入该队伍");
+        }
+        if (seatResult == TeamSeatManager.SeatResult.TEAM_FULL) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "队伍已满");
+        }
+        //异步批量写入时，写入预写日志就算加入成功，关系表由后台批量写入
+        if (teamUserWriteBehind.isEnabled()) {
+            try {
+                teamUserWriteBehind.join(teamId, userId);
+            } catch (RuntimeException e) {
+                teamSeatManager.release(teamId, userId);
+                log.error("write team join event error, teamId={}, userId={}", teamId, userId, e);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "加入队伍失败");
+            }
+            return true;
+        }
+        //新增队伍和用户关联表数据，失败时归还座位
+        TeamUser teamUser = new TeamUser();
+        teamUser.setTeamId(teamId);
+        teamUser.setUserId(userId);
+        teamUser.setJoinTime(new Date());
+        boolean result;
+        try {
+            result = teamUserService.save(teamUser);
+        } catch (RuntimeException e) {
+            teamSeatManager.release(teamId, userId);
+            throw e;
+        }
+        if (!result) {
+            teamSeatManager.release(teamId, userId);
+        }
+        return result;
+    }
+
+    /**
+     * 加锁后查库校验再加入队伍，关闭席位计数时使用
+     * @param team 队伍
+     * @param userId 用户id
+     * @return boolean 加入结果
+     */
+    private boolean joinTeamByLock(Team team, long userId) {
+        long teamId = team.getId();
+        //分布式锁，按队伍和用户分别加锁：同一队伍的加入互斥（人数上限），同一用户的加入互斥（加入数量上限）
+        //不同队伍、不同用户的加入可以并行；等待有上限，不再空转
+        RLock teamLock = redissonClient.getLock(String.format(TEAM_JOIN_LOCK_KEY, teamId));
+        RLock userLock = redissonClient.getLock(String.format(USER_JOIN_LOCK_KEY, userId));
+        RLock lock = redissonClient.getMultiLock(teamLock, userLock);
+        boolean locked = false;
+        Timer.Sample lockSample = Timer.start(meterRegistry);
         try{
-            while (true) {
-                if (lock.tryLock(0, -1, TimeUnit.MILLISECONDS)) {
-                    QueryWrapper<TeamUser> teamUserQueryWrapper = new QueryWrapper<>();
-                    teamUserQueryWrapper.eq("userId", userId);
-                    long hadJoinedTeamNum = teamUserService.count(teamUserQueryWrapper);
-                    if (hadJoinedTeamNum >= 5) {
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户最多加入5个队伍");
-                    }
-                    //用户不能重复加入同一个队伍
-                    teamUserQueryWrapper = new QueryWrapper<>();
-                    teamUserQueryWrapper.eq("teamId", teamId);
-                    teamUserQueryWrapper.eq("userId", userId);
-                    long userJoinTeamNum = teamUserService.count(teamUserQueryWrapper);
-                    if (userJoinTeamNum > 0) {
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户已经加入该队伍");
-                    }
-                    //用户加入的队伍必须是未满的
-                    teamUserQueryWrapper = new QueryWrapper<>();
-                    teamUserQueryWrapper.eq("teamId", teamId);
-                    long teamHaveUserNum = teamUserService.count(teamUserQueryWrapper);
-                    if (team.getMaxNum() <= teamHaveUserNum) {
-                        throw new BusinessException(ErrorCode.PARAMS_ERROR, "队伍已满");
-                    }
-                    //新增队伍和用户关联表数据。
-                    TeamUser teamUser = new TeamUser();
-                    teamUser.setTeamId(teamId);
-                    teamUser.setUserId(userId);
-                    teamUser.setJoinTime(new Date());
-                    return teamUserService.save(teamUser);
-                }
+            locked = lock.tryLock(JOIN_LOCK_WAIT_MILLIS, -1, TimeUnit.MILLISECONDS);
+            lockSample.stop(meterRegistry.timer("yupao.lock.wait", "lock", "teamJoin", "acquired", String.valueOf(locked)));
+            if (!locked) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "加入队伍的人太多，请稍后再试");
+            }
+            //用户最多加入5个队伍
+            QueryWrapper<TeamUser> teamUserQueryWrapper = new QueryWrapper<>();
+            teamUserQueryWrapper.eq("userId", userId);
+            long hadJoinedTeamNum = teamUserService.count(teamUserQueryWrapper);
+            if (hadJoinedTeamNum >= TeamSeatManager.MAX_JOIN_TEAM_NUM) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户最多加入5个队伍");
+            }
+            //用户不能重复加入同一个队伍
+            teamUserQueryWrapper = new QueryWrapper<>();
+            teamUserQueryWrapper.eq("teamId", teamId);
+            teamUserQueryWrapper.eq("userId", userId);
+            long userJoinTeamNum = teamUserService.count(teamUserQueryWrapper);
+            if (userJoinTeamNum > 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户已经加入该队伍");
+            }
+            //用户加入的队伍必须是未满的
+            teamUserQueryWrapper = new QueryWrapper<>();
+            teamUserQueryWrapper.eq("teamId", teamId);
+            long teamHaveUserNum = teamUserService.count(teamUserQueryWrapper);
+            if (team.getMaxNum() <= teamHaveUserNum) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "队伍已满");
             }
+            //新增队伍和用户关联表数据。
+            TeamUser teamUser = new TeamUser();
+            teamUser.setTeamId(teamId);
+            teamUser.setUserId(userId);
+            teamUser.setJoinTime(new Date());
+            return teamUserService.save(teamUser);
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             log.error("UserJoin error",e);
             return false;
         }finally {
             //锁的释放不能放try，要保证手动释放一定执行，防止看门狗机制一直续期
-            if(lock.isHeldByCurrentThread()){
+            //联锁不支持isHeldByCurrentThread，用加锁结果判断
+            if(locked){
                 lock.unlock();
             }
         }
@@ -382,6 +509,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      * @return boolean 退出结果
      */
     @Override
+    @Timed(value = "yupao.team.quit", histogram = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean quitTeam(TeamQuitRequest teamQuitRequest, User loginUser) {
         //校验参数是否为空
@@ -400,6 +528,27 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         }
         //校验登录用户是否加入队伍
         long userId = loginUser.getId();
+        if (seatCounterEnabled && teamUserWriteBehind.isEnabled()) {
+            //异步批量写入时，关系表可能还没写入，以席位集合为准
+            if (!teamSeatManager.isMember(teamId, userId)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR,"用户未加入该队伍");
+            }
+            //普通成员退出时队长还在队伍中，不用删除队伍或转移队长，只记录事件
+            //先释放座位再记录事件，后台写入时读到的席位集合已经是退出后的状态
+            if (team.getUserId() != userId) {
+                teamSeatManager.release(teamId, userId);
+                try {
+                    teamUserWriteBehind.quit(teamId, userId);
+                } catch (RuntimeException e) {
+                    teamSeatManager.restore(teamId, userId);
+                    log.error("write team quit event error, teamId={}, userId={}", teamId, userId, e);
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "退出队伍失败");
+                }
+                return true;
+            }
+            //队长退出要查询和修改关系表，先把积压的事件写入
+            teamUserWriteBehind.flushAll();
+        }
         TeamUser queryTeamUser = new TeamUser();
         queryTeamUser.setTeamId(teamId);
         queryTeamUser.setUserId(userId);
@@ -417,6 +566,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if(teamHaveUserNum == 1){
             //删除队伍
             this.removeById(teamId);
+            teamSeatManager.removeTeamAfterCommit(teamId);
         }else{//队伍里有多个人
             //判断登录用户是不是队长
             if(team.getUserId()==userId){
@@ -447,7 +597,11 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         teamUserQueryWrapper = new QueryWrapper<>();
         teamUserQueryWrapper.eq("teamId",teamId);
         teamUserQueryWrapper.eq("userId",userId);
-        return teamUserService.remove(teamUserQueryWrapper);
+        boolean result = teamUserService.remove(teamUserQueryWrapper);
+        if (result) {
+            teamSeatManager.releaseAfterCommit(teamId, userId);
+        }
+        return result;
     }
 
     /**
@@ -472,6 +626,8 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if(team.getUserId() != loginUser.getId()){
             throw new BusinessException(ErrorCode.NO_AUTH,"用户不是队长，没有解散队伍的权限");
         }
+        //先把积压的成员关系事件写入，再删除所有关系
+        teamUserWriteBehind.flushAll();
         //移除所有加入队伍的关联关系
         QueryWrapper<TeamUser> teamUserQueryWrapper = new QueryWrapper<>();
         teamUserQueryWrapper.eq("teamId",teamId);
@@ -479,6 +635,7 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
         if(!result){
             throw new BusinessException(ErrorCode.SYSTEM_ERROR,"移除所有加入队伍的关联关系失败");
         }
+        teamSeatManager.removeTeamAfterCommit(teamId);
         //删除队伍
         return this.removeById(teamId);
     }
@@ -491,46 +648,91 @@ public class TeamServiceImpl extends ServiceImpl<TeamMapper, Team>
      */
     @Override
     public List<TeamUserVO> flagUserJoinedTeams(List<TeamUserVO> originTeamList, HttpServletRequest request) {
+        if (CollectionUtils.isEmpty(originTeamList)) {
+            return originTeamList;
+        }
         //获取原始队伍列表的队伍id集合
         List<Long> teamIdList = originTeamList.stream().map(TeamUserVO::getId).collect(Collectors.toList());
-        //使用try，catch，避免getLoginUser出现异常，让不想登录的用户无法访问
-        try {
-            //通过team_user表，根据登录用户的userId和teamId查询当前登录用户在关联表的信息
-            QueryWrapper<TeamUser> teamUserQueryWrapper = new QueryWrapper<>();
-            User loginUser = userService.getLoginUser(request);
-            teamUserQueryWrapper.eq("userId",loginUser.getId());
-            teamUserQueryWrapper.in("teamId",teamIdList);
-            //得到当前登录用户在关联表的信息
-            List<TeamUser> teamUserList = teamUserService.list(teamUserQueryWrapper);
-            //通过关联表消息得到登录用户加入的队伍的id
-            Set<Long> hasJoinTeamIdSet = teamUserList.stream().map(TeamUser::getTeamId).collect(Collectors.toSet());
-            //遍历传入的原队伍列表，通过用户加入队伍id的集合，标识用户加入了哪些队伍
-            originTeamList.forEach(team ->{
-                //判断当前队伍是否被用户加入
-                boolean hasJoin = hasJoinTeamIdSet.contains(team.getId());
-                team.setHasJoin(hasJoin);
-            });
-            /**
-             * 查询已加入队伍的人数
-             */
-            QueryWrapper<TeamUser> userTeamQueryWrapper = new QueryWrapper<>();
-            userTeamQueryWrapper.in("teamId",teamIdList);
-            List<TeamUser> userTeamList = teamUserService.list(userTeamQueryWrapper);
-            //根据teamId进行分组，分组后就知道每个队伍的人数了
-            Map<Long, List<TeamUser>> teamIdUserTeamList = userTeamList.stream().
-                    collect(Collectors.groupingBy(TeamUser::getTeamId));
-            //给hasJoinNum设置值
-            originTeamList.forEach(team ->
-                    team.setHasJoinNum(teamIdUserTeamList.getOrDefault(team.getId(),new
-                            ArrayList<>()).size()));
-        }catch (Exception e){
-
-        }
+        //未登录也可以查看队伍，只是不标记是否已加入
+        User loginUser = userService.getLoginUserPermitNull(request);
+        Long loginUserId = loginUser == null ? null : loginUser.getId();
+        //一次分组查询得到每个队伍的人数和登录用户是否已加入
+        Map<Long, TeamJoinCount> teamJoinCountMap = teamUserService.getTeamJoinCountMap(teamIdList, loginUserId);
+        originTeamList.forEach(team -> {
+            TeamJoinCount teamJoinCount = teamJoinCountMap.get(team.getId());
+            if (teamJoinCount == null) {
+                team.setHasJoin(false);
+                team.setHasJoinNum(0);
+                return;
+            }
+            team.setHasJoin(Boolean.TRUE.equals(teamJoinCount.getHasJoin()));
+            team.setHasJoinNum(teamJoinCount.getHasJoinNum());
+        });
         //将处理完的原队伍列表返回出去
         return originTeamList;
 
     }
 
+    /**
+     * 游标分页查询队伍
+     * 用 id > 游标 order by id limit pageSize + 1 代替 limit offset,size，不需要跳过前面的行
+     * 只查 TEAM_SAFE_COLUMNS 中的列，不返回队伍密码
+     * @param teamQuery 队伍查询请求体（afterId为游标，needTotal为是否查询总数）
+     * @param isAdmin 是否为管理员
+     * @return CursorPage<Team> 队伍分页
+     */
+    @Override
+    public CursorPage<Team> listTeamsByCursor(TeamQuery teamQuery, boolean isAdmin) {
+        Team team = TeamConvert.INSTANCE.toTeam(teamQuery);
+        QueryWrapper<Team> queryWrapper = buildCursorQueryWrapper(team, isAdmin);
+        queryWrapper.select(TEAM_SAFE_COLUMNS);
+        Long afterId = teamQuery.getAfterId();
+        queryWrapper.gt(afterId != null, "id", afterId);
+        queryWrapper.orderByAsc("id");
+        queryWrapper.last("limit " + (teamQuery.getPageSize() + 1));
+        CursorPage<Team> cursorPage = CursorPage.of(this.list(queryWrapper), teamQuery.getPageSize(), Team::getId);
+        if (teamQuery.isNeedTotal()) {
+            cursorPage.setTotal(this.count(buildCursorQueryWrapper(team, isAdmin)));
+        }
+        return cursorPage;
+    }
+
+    /**
+     * 游标分页的查询条件，和 listTeam 一样只有管理员可以查询私有队伍
+     * @param team 查询条件
+     * @param isAdmin 是否为管理员
+     * @return QueryWrapper<Team>
+     */
+    private QueryWrapper<Team> buildCursorQueryWrapper(Team team, boolean isAdmin) {
+        QueryWrapper<Team> queryWrapper = new QueryWrapper<>(team);
+        if (!isAdmin) {
+            //如果不是管理员，想查询的队伍状态又不是公开，则不允许查询
+            if (TeamStatusEnum.PRIVATE.equals(TeamStatusEnum.getEnumByValue(team.getStatus()))) {
+                throw new BusinessException(ErrorCode.NO_AUTH, "无权限查询队伍");
+            }
+            //没有指定状态时不返回私有队伍
+            queryWrapper.ne(team.getStatus() == null, "status", TeamStatusEnum.PRIVATE.getValue());
+        }
+        return queryWrapper;
+    }
+
+    /**
+     * 流式导出队伍
+     * 查询结果不整体放进内存，数据库每返回一行就写出一行
+     * @param exportWriter 导出写入器，列顺序见 TEAM_EXPORT_COLUMNS
+     * @return long 导出的行数
+     */
+    @Override
+    public long exportTeams(ExportWriter exportWriter) {
+        exportWriter.writeHeader();
+        this.baseMapper.exportTeams(resultContext -> {
+            Team team = resultContext.getResultObject();
+            exportWriter.writeRow(team.getId(), team.getName(), team.getDescription(), team.getMaxNum(),
+                    team.getExpireTime(), team.getUserId(), team.getStatus(), team.getCreateTime());
+        });
+        return exportWriter.finish();
+    }
+
 
 
 }
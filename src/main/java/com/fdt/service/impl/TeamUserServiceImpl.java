@@ -2,10 +2,15 @@ package com.fdt.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fdt.model.domain.TeamUser;
+import com.fdt.model.dto.TeamJoinCount;
 import com.fdt.service.TeamUserService;
 import com.fdt.mapper.TeamUserMapper;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
 * @author 冯德田
 * @description 针对表【team_user(用户队伍关系)】的数据库操作Service实现
@@ -15,6 +20,17 @@ import org.springframework.stereotype.Service;
 public class TeamUserServiceImpl extends ServiceImpl<TeamUserMapper, TeamUser>
     implements TeamUserService{
 
+    @Override
+    public Map<Long, TeamJoinCount> getTeamJoinCountMap(Collection<Long> teamIds, Long userId) {
+        Map<Long, TeamJoinCount> teamJoinCountMap = new HashMap<>();
+        if (teamIds == null || teamIds.isEmpty()) {
+            return teamJoinCountMap;
+        }
+        for (TeamJoinCount teamJoinCount : baseMapper.listTeamJoinCount(teamIds, userId)) {
+            teamJoinCountMap.put(teamJoinCount.getTeamId(), teamJoinCount);
+        }
+        return teamJoinCountMap;
+    }
 }
 
 
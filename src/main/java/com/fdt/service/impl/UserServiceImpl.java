@@ -1,33 +1,57 @@
 package com.fdt.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fdt.common.ErrorCode;
+import com.fdt.convert.UserConvert;
 import com.fdt.exception.BusinessException;
+import com.fdt.manager.ActiveUserManager;
+import com.fdt.manager.AuthTokenManager;
+import com.fdt.manager.MatchResultManager;
+import com.fdt.manager.UserMatchEngine;
+import com.fdt.manager.UserAccountBloomFilter;
+import com.fdt.manager.UserProfileCache;
+import com.fdt.manager.TwoLevelCache;
+import com.fdt.manager.UserTagIndexManager;
+import com.fdt.manager.UserTagSyncManager;
 import com.fdt.model.domain.User;
+import com.fdt.model.vo.CursorPage;
+import com.fdt.model.vo.UserVO;
 import com.fdt.service.UserService;
+import com.fdt.service.UserTagService;
 import com.fdt.mapper.UserMapper;
 import com.fdt.utils.AlgorithmUtils;
+import com.fdt.utils.ExportWriter;
+import com.fdt.utils.TopKSelector;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.math3.util.Pair;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.DigestUtils;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import static com.fdt.contant.UserContant.ADMIN_ROLE;
+import static com.fdt.contant.UserContant.RECOMMEND_CACHE_KEY;
+import static com.fdt.contant.UserContant.SAFE_USER_COLUMNS;
 import static com.fdt.contant.UserContant.USER_LOGIN_STATE;
+import static com.fdt.contant.UserContant.USER_TAG_RETRY_KEY;
 
 /**
  * @author 冯德田
@@ -42,17 +66,98 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Resource
     private UserMapper userMapper;
 
-    //读写redis需要的变量
+    //读写缓存需要的变量（本地缓存 + redis）
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private TwoLevelCache twoLevelCache;
 
+    @Resource
+    private UserTagIndexManager userTagIndexManager;
+
+    @Resource
+    private UserTagService userTagService;
+
+    @Resource
+    private UserMatchEngine userMatchEngine;
+
+    @Resource
+    private UserProfileCache userProfileCache;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ActiveUserManager activeUserManager;
+
+    @Resource
+    private MatchResultManager matchResultManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private AuthTokenManager authTokenManager;
+
+    @Resource
+    private UserAccountBloomFilter userAccountBloomFilter;
+
+    @Resource
+    private UserTagSyncManager userTagSyncManager;
+
+    /**
+     * 按id查询用户时每批的id个数，防止in条件过长
+     */
+    private static final int QUERY_BY_IDS_BATCH_SIZE = 1000;
+
+    /**
+     * 推荐用户缓存的基础过期时间
+     */
+    private static final long RECOMMEND_EXPIRE_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * 推荐用户缓存过期时间的随机增量上限
+     */
+    private static final long RECOMMEND_EXPIRE_JITTER_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * 等待推荐用户加载的最长时间
+     */
+    private static final long RECOMMEND_LOAD_WAIT_MILLIS = 3000L;
+
+    /**
+     * 正在加载的推荐用户缓存键 -> 加载结果
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Page<User>>> recommendLoadingMap = new ConcurrentHashMap<>();
+
+    /**
+     * 记录扫描行数的方法
+     */
+    private static final String[] ROWS_SCANNED_METHODS = {"searchUsersByTags", "memorySearchUsersByTags", "scanMatchUsers"};
+
+    /**
+     * 方法名 -> 扫描行数的分布摘要，启动时注册一次
+     */
+    private final Map<String, DistributionSummary> rowsScannedSummaryMap = new HashMap<>();
+
+    @PostConstruct
+    public void initMetrics() {
+        for (String method : ROWS_SCANNED_METHODS) {
+            rowsScannedSummaryMap.put(method, DistributionSummary.builder("yupao.user.rows.scanned")
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
 
-    private ValueOperations<String, Object> valueOperations;
     /**
      * 盐值，混淆密码
      */
     private static final String SALT = "fdt";
 
+    /**
+     * 星球编号唯一索引名，和 sql/create_table.sql 一致
+     */
+    private static final String UNIQUE_PLANET_CODE_INDEX = "uniq_planetCode";
+
 
     /**
      * 用户注册
@@ -95,35 +200,42 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "密码和校验密码应相同");
         }
 
-        // 账户不能重复，数据库操作放后面，避免性能浪费，
-        // 如果其他规则都没通过，就不需要判断账户是否重复
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("userAccount", userAccount);
-        long count = userMapper.selectCount(queryWrapper);
-        if (count > 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号已存在");
-        }
-
-        // 星球编号不能重复
-        queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("planetCode", planetCode);
-        count = userMapper.selectCount(queryWrapper);
-        if (count > 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "星球编号不能重复");
+        // 账户和星球编号不能重复，由唯一索引保证，这里不再先查库
+        // 布隆过滤器判断账号可能已存在时才查一次库，过滤器有误判，不能直接拒绝
+        if (userAccountBloomFilter.mightContain(userAccount)) {
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("userAccount", userAccount);
+            long count = userMapper.selectCount(queryWrapper);
+            if (count > 0) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号已存在");
+            }
         }
 
         // 2. 加密
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+        String encryptPassword = encryptPassword(userPassword);
 
         //3. 保存到数据库
         User user = new User();
         user.setUserAccount(userAccount);
         user.setUserPassword(encryptPassword);
         user.setPlanetCode(planetCode);
-        boolean saveResult = this.save(user);
+        boolean saveResult;
+        try {
+            saveResult = this.save(user);
+        } catch (DuplicateKeyException e) {
+            //并发注册同一账号或星球编号时，按冲突的索引返回原来的提示
+            if (StringUtils.contains(e.getMessage(), UNIQUE_PLANET_CODE_INDEX)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "星球编号不能重复");
+            }
+            userAccountBloomFilter.add(userAccount);
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "账号已存在");
+        }
         if (!saveResult) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "数据库保存用户注册信息失败");
         }
+        userAccountBloomFilter.add(userAccount);
+        //同步标签倒排索引和匹配引擎
+        userTagSyncManager.updateUserTags(user.getId(), user.getTags());
         return user.getId();
     }
 
@@ -137,6 +249,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      * @return User 用户
      */
     @Override
+    @Timed(value = "yupao.user.login", histogram = true)
     public User userLogin(String userAccount, String userPassword, HttpServletRequest request) {
         // 1. 校验
         // 不能为空
@@ -159,7 +272,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         }
 
         // 2. 加密
-        String encryptPassword = DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+        String encryptPassword = encryptPassword(userPassword);
 
         // 3. 查询用户是否存在
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
@@ -175,12 +288,28 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         //4.脱敏
         User safetyUser = getSafetyUser(user);
 
-        //5.记录用户登录态
-        request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
+        //5.记录用户登录态，令牌模式下由接口层签发令牌，不写session
+        if (!authTokenManager.isEnabled()) {
+            request.getSession().setAttribute(USER_LOGIN_STATE, safetyUser);
+        }
+
+        //6.记录活跃用户，用于预热缓存
+        activeUserManager.recordLogin(safetyUser.getId());
 
         return safetyUser;
     }
 
+    /**
+     * 密码加盐后md5加密
+     *
+     * @param userPassword 明文密码
+     * @return 加密后的密码
+     */
+    @Override
+    public String encryptPassword(String userPassword) {
+        return DigestUtils.md5DigestAsHex((SALT + userPassword).getBytes());
+    }
+
     /**
      * 获取脱敏用户
      *
@@ -208,15 +337,75 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         return safetyUser;
     }
 
+    @Override
+    public User getSafetyUserById(long userId) {
+        UserVO userVO = userProfileCache.getUserVOMap(Collections.singletonList(userId)).get(userId);
+        return userVO == null ? null : toSafetyUser(userVO);
+    }
+
+    /**
+     * 缓存中的用户信息转为脱敏用户，字段和 getSafetyUser 一致
+     *
+     * @param userVO 缓存中的用户信息
+     * @return User 脱敏后的用户信息
+     */
+    private User toSafetyUser(UserVO userVO) {
+        return UserConvert.INSTANCE.toSafetyUser(userVO);
+    }
+
     /**
      * 根据标签获取用户
-     * 在内存中进行过滤
+     * 通过标签倒排索引求交集得到用户id，只查询命中的用户
+     * 索引还没构建完成时用用户标签关系表连接查询用户id，关系表还没回填完成时退回到内存过滤
      *
      * @param tagNameList 标签列表
      * @return List<User> 用户列表
      */
     @Override
+    @Timed(value = "yupao.user.search.tags", histogram = true)
     public List<User> searchUsersByTags(List<String> tagNameList) {
+//      首先判断传入的标签列表是否为空
+        if (CollectionUtils.isEmpty(tagNameList)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        long[] userIds;
+        if (userTagIndexManager.isReady()) {
+            userIds = userTagIndexManager.searchUserIds(tagNameList);
+        } else if (userTagService.isBackfilled()) {
+//          索引还没构建完成时，走关系表和标签名的索引连接查询
+            userIds = userTagService.listUserIdsByTagNames(tagNameList).stream().mapToLong(Long::longValue).toArray();
+        } else {
+//          关系表也没有回填完成时，退回到内存过滤
+            return memorySearchUsersByTags(tagNameList);
+        }
+        recordRowsScanned("searchUsersByTags", userIds.length);
+        List<User> userList = new ArrayList<>(userIds.length);
+//      分批按id查询，id是升序的，每批结果排序后按顺序拼接
+        for (int from = 0; from < userIds.length; from += QUERY_BY_IDS_BATCH_SIZE) {
+            int to = Math.min(from + QUERY_BY_IDS_BATCH_SIZE, userIds.length);
+            List<Long> batchIdList = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batchIdList.add(userIds[i]);
+            }
+            //只查脱敏后的列，查出来直接返回
+            QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select(SAFE_USER_COLUMNS);
+            queryWrapper.in("id", batchIdList);
+            List<User> batchUserList = userMapper.selectList(queryWrapper);
+            batchUserList.sort(Comparator.comparingLong(User::getId));
+            userList.addAll(batchUserList);
+        }
+        return userList;
+    }
+
+    /**
+     * 根据标签获取用户
+     * 在内存中进行过滤，标签索引未就绪时使用
+     *
+     * @param tagNameList 标签列表
+     * @return List<User> 用户列表
+     */
+    private List<User> memorySearchUsersByTags(List<String> tagNameList) {
 //      首先判断传入的标签列表是否为空
         if (CollectionUtils.isEmpty(tagNameList)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
@@ -226,7 +415,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
 //        查询开始时间
 //        long startTime = System.currentTimeMillis();
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(SAFE_USER_COLUMNS);
         List<User> userList = userMapper.selectList(queryWrapper);
+        recordRowsScanned("memorySearchUsersByTags", userList.size());
         Gson gson = new Gson();
 //        2.2 在内存中判断判断是否包含传入的标签
 //        使用了lambda表达式 -> 指向动作
@@ -246,7 +437,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
                 }
             }
             return true;
-        }).map(this::getSafetyUser).collect(Collectors.toList());
+        }).collect(Collectors.toList());
 //        查询结束时间
 //        log.info("内存查询用户耗时："+(System.currentTimeMillis() - startTime)+"ms");
     }
@@ -298,10 +489,37 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Override
     public int userLogout(HttpServletRequest request) {
 //        移除登录态
+        if (authTokenManager.isEnabled()) {
+            AuthTokenManager.TokenClaims tokenClaims = authTokenManager.verify(request);
+            if (tokenClaims != null) {
+                authTokenManager.revoke(tokenClaims);
+            }
+            return 1;
+        }
         request.getSession().removeAttribute(USER_LOGIN_STATE);
         return 1;
     }
 
+    /**
+     * 删除用户，同时删除用户资料缓存和标签关系，并从所有节点的标签索引和匹配引擎中移除
+     */
+    @Override
+    public boolean deleteUser(long userId) {
+        boolean result = this.removeById(userId);
+        if (result) {
+            userProfileCache.invalidate(userId);
+            //不移除的话已删除的用户还会占用标签搜索和匹配的名额，查库时才被过滤，返回的结果会变少
+            userTagSyncManager.removeUser(userId);
+            //标签关系是派生数据，删除失败时关系表查出的已删除用户在查用户时会被过滤
+            try {
+                userTagService.removeUserTags(userId);
+            } catch (Exception e) {
+                log.error("remove user tag error, userId={}", userId, e);
+            }
+        }
+        return result;
+    }
+
     /**
      * 更新用户信息
      */
@@ -323,7 +541,31 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
             throw new BusinessException(ErrorCode.NULL_ERROR);
         }
         //调用根据id进行更新的方法
-        return userMapper.updateById(user);
+        int result = userMapper.updateById(user);
+        if (result > 0) {
+            userProfileCache.invalidate(userId);
+        }
+        //标签有修改时同步标签倒排索引
+        if (result > 0 && user.getTags() != null) {
+            //所有节点的标签索引和匹配引擎都要更新
+            userTagSyncManager.updateUserTags(userId, user.getTags());
+            //受影响用户的匹配结果由后台任务重新计算
+            if (!user.getTags().equals(oldUser.getTags())) {
+                matchResultManager.recordTagChange(userId, oldUser.getTags(), user.getTags());
+            }
+            //用户标签关系是派生数据，同步失败不影响本次更新，记入重试集合，由标签回填任务重新同步
+            try {
+                userTagService.syncUserTags(userId, user.getTags());
+            } catch (Exception e) {
+                log.error("sync user tag error, userId={}", userId, e);
+                try {
+                    redissonClient.<Long>getSet(USER_TAG_RETRY_KEY).add(userId);
+                } catch (Exception retryException) {
+                    log.error("add user tag retry error, userId={}", userId, retryException);
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -338,13 +580,45 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         if (request == null) {
             return null;
         }
-        Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
+        Object userObj = authTokenManager.isEnabled() ? getTokenLoginUser(request)
+                : request.getSession().getAttribute(USER_LOGIN_STATE);
         if (userObj == null) {
             throw new BusinessException(ErrorCode.NOT_LOGIN);
         }
         return (User) userObj;
     }
 
+    /**
+     * 获取当前登录用户，未登录时返回null（用于登录和不登录都能访问的接口）
+     *
+     * @param request 请求信息
+     * @return User 当前登录用户
+     */
+    @Override
+    public User getLoginUserPermitNull(HttpServletRequest request) {
+        if (request == null) {
+            return null;
+        }
+        if (authTokenManager.isEnabled()) {
+            return getTokenLoginUser(request);
+        }
+        return (User) request.getSession().getAttribute(USER_LOGIN_STATE);
+    }
+
+    /**
+     * 令牌模式下获取当前登录用户，验签在本地完成，用户信息读本地缓存
+     *
+     * @param request 请求信息
+     * @return User 脱敏后的登录用户，未登录或用户已删除时返回null
+     */
+    private User getTokenLoginUser(HttpServletRequest request) {
+        AuthTokenManager.TokenClaims tokenClaims = authTokenManager.verify(request);
+        if (tokenClaims == null) {
+            return null;
+        }
+        return getSafetyUserById(tokenClaims.getUserId());
+    }
+
     /**
      * 是否为管理员
      *
@@ -355,6 +629,11 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Override
     public boolean isAdmin(HttpServletRequest request) {
         // 判断用户是否为管理员
+        if (authTokenManager.isEnabled()) {
+            //不信任令牌中的角色，也不读用户资料缓存，以数据库中的当前角色为准，被降级或删除的管理员立即失去权限
+            AuthTokenManager.TokenClaims tokenClaims = authTokenManager.verify(request);
+            return tokenClaims != null && isAdminInDb(tokenClaims.getUserId());
+        }
         Object userObj = request.getSession().getAttribute(USER_LOGIN_STATE);
         User user = (User) userObj;
         return user != null && user.getUserRole() == ADMIN_ROLE;
@@ -368,11 +647,29 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public boolean isAdmin(User loginUser) {
+        //令牌模式下登录用户来自用户资料缓存，角色以数据库为准
+        if (authTokenManager.isEnabled()) {
+            return loginUser != null && isAdminInDb(loginUser.getId());
+        }
         // 判断用户是否为管理员
         boolean result = loginUser != null && loginUser.getUserRole() == ADMIN_ROLE;
         return result;
     }
 
+    /**
+     * 从数据库读取用户的当前角色判断是否为管理员，已删除的用户查不到
+     *
+     * @param userId 用户id
+     * @return boolean
+     */
+    private boolean isAdminInDb(long userId) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "userRole");
+        queryWrapper.eq("id", userId);
+        User user = userMapper.selectOne(queryWrapper);
+        return user != null && user.getUserRole() != null && user.getUserRole() == ADMIN_ROLE;
+    }
+
     /**
      * 数据缓存，将键值对存入Redis中
      *
@@ -383,87 +680,282 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
      */
     @Override
     public void setRedisCache(String key, Object value, long time, TimeUnit unit) {
-        if (valueOperations == null) {
-            valueOperations = redisTemplate.opsForValue();
+        twoLevelCache.set(key, value, time, unit);
+    }
+
+    /**
+     * 读取缓存，先读本地缓存，未命中再读Redis
+     *
+     * @param key 键
+     * @return Object 缓存值，不存在时返回null
+     */
+    @Override
+    public Object getRedisCache(String key) {
+        return twoLevelCache.get(key);
+    }
+
+    /**
+     * 分页获取推荐用户
+     * 缓存未命中时：本节点内同一个键只有一个线程加载，其他线程等待它的结果；
+     * 加载线程再用分布式锁保证多个节点中只有一个查库，拿到锁后先复查缓存
+     *
+     * @param pageNum  页码
+     * @param pageSize 每页条数
+     * @param userId   登录用户id
+     * @return Page<User> 脱敏后的推荐用户分页
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Page<User> recommendUsers(long pageNum, long pageSize, long userId) {
+        String redisKey = String.format(RECOMMEND_CACHE_KEY, userId, pageNum, pageSize);
+        Page<User> userPage = (Page<User>) getRedisCache(redisKey);
+        meterRegistry.counter("yupao.user.recommend.cache", "result", userPage != null ? "hit" : "miss").increment();
+        if (userPage != null) {
+            return userPage;
+        }
+        CompletableFuture<Page<User>> future = new CompletableFuture<>();
+        CompletableFuture<Page<User>> loadingFuture = recommendLoadingMap.putIfAbsent(redisKey, future);
+        if (loadingFuture != null) {
+            return waitRecommendLoading(loadingFuture);
         }
         try {
-            valueOperations.set(key, value, time, unit);
-        } catch (Exception e) {
-            log.error("redis set key error", e);
+            userPage = loadRecommendUsersWithLock(redisKey, pageNum, pageSize);
+            future.complete(userPage);
+            return userPage;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            recommendLoadingMap.remove(redisKey, future);
         }
     }
 
-    @Override
-    public Object getRedisCache(String key) {
-        if (valueOperations == null) {
-            valueOperations = redisTemplate.opsForValue();
+    private Page<User> waitRecommendLoading(CompletableFuture<Page<User>> loadingFuture) {
+        try {
+            return loadingFuture.get(RECOMMEND_LOAD_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR);
+        } catch (TimeoutException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "系统繁忙，请稍后再试");
         }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Page<User> loadRecommendUsersWithLock(String redisKey, long pageNum, long pageSize) {
+        RLock lock = redissonClient.getLock(redisKey + ":lock");
+        boolean locked = false;
+        Timer.Sample lockSample = Timer.start(meterRegistry);
         try {
-            return valueOperations.get(key);
-        } catch (Exception e) {
-            log.error("redis get key error", e);
+            locked = lock.tryLock(RECOMMEND_LOAD_WAIT_MILLIS, -1, TimeUnit.MILLISECONDS);
+            lockSample.stop(meterRegistry.timer("yupao.lock.wait", "lock", "recommendLoad", "acquired", String.valueOf(locked)));
+            if (locked) {
+                //其他节点可能已经加载完成
+                Page<User> userPage = (Page<User>) getRedisCache(redisKey);
+                if (userPage != null) {
+                    return userPage;
+                }
+            }
+            //等锁超时（redis慢或持锁节点卡住）时直接查库，保证接口可用
+            Page<User> userPage = loadRecommendUsers(pageNum, pageSize);
+            setRecommendCache(redisKey, userPage);
+            return userPage;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR);
+        } finally {
+            //锁的释放不能放try，要保证手动释放一定执行，防止看门狗机制一直续期
+            if (locked && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
         }
-        return null;
     }
 
     /**
-     * 获取最匹配用户的列表
+     * 查库获取推荐用户（不读写缓存）
+     *
+     * @param pageNum  页码
+     * @param pageSize 每页条数
+     * @return Page<User> 脱敏后的推荐用户分页
+     */
+    @Override
+    public Page<User> loadRecommendUsers(long pageNum, long pageSize) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        //只查脱敏后的列，不需要再逐个脱敏
+        queryWrapper.select(SAFE_USER_COLUMNS);
+        //分页查询，current指示当前页码，size指示每页显示的记录数
+        return this.page(new Page<>(pageNum, pageSize), queryWrapper);
+    }
+
+    /**
+     * 游标分页获取推荐用户
+     * 用 id > 游标 order by id limit pageSize + 1 代替 limit offset,size，不需要跳过前面的行
+     *
+     * @param afterId   上一页的游标，为空表示第一页
+     * @param pageSize  每页条数
+     * @param needTotal 是否查询总数
+     * @return CursorPage<User> 脱敏后的推荐用户
+     */
+    @Override
+    public CursorPage<User> recommendUsersByCursor(Long afterId, int pageSize, boolean needTotal) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select(SAFE_USER_COLUMNS);
+        queryWrapper.gt(afterId != null, "id", afterId);
+        queryWrapper.orderByAsc("id");
+        queryWrapper.last("limit " + (pageSize + 1));
+        List<User> userList = userMapper.selectList(queryWrapper);
+        CursorPage<User> cursorPage = CursorPage.of(userList, pageSize, User::getId);
+        if (needTotal) {
+            cursorPage.setTotal(this.count());
+        }
+        return cursorPage;
+    }
+
+    /**
+     * 流式导出用户
+     * 查询结果不整体放进内存，数据库每返回一行就写出一行
+     *
+     * @param username     用户昵称（模糊匹配），为空时导出全部
+     * @param exportWriter 导出写入器，列顺序见 USER_EXPORT_COLUMNS
+     * @return long 导出的行数
+     */
+    @Override
+    public long exportUsers(String username, ExportWriter exportWriter) {
+        exportWriter.writeHeader();
+        userMapper.exportUsers(username, resultContext -> {
+            User user = resultContext.getResultObject();
+            exportWriter.writeRow(user.getId(), user.getUsername(), user.getUserAccount(), user.getAvatarUrl(),
+                    user.getGender(), user.getPhone(), user.getEmail(), user.getTags(), user.getUserRole(),
+                    user.getStatus(), user.getCreateTime(), user.getPlanetCode());
+        });
+        return exportWriter.finish();
+    }
+
+    /**
+     * 记录一次请求扫描（查询或遍历）的用户行数
+     *
+     * @param method 方法名，需要在 ROWS_SCANNED_METHODS 中
+     * @param rows   行数
+     */
+    private void recordRowsScanned(String method, long rows) {
+        rowsScannedSummaryMap.get(method).record(rows);
+    }
+
+    private void setRecommendCache(String redisKey, Page<User> userPage) {
+        //过期时间加随机值，防止大量缓存同时过期
+        long expireMillis = RECOMMEND_EXPIRE_MILLIS + ThreadLocalRandom.current().nextLong(RECOMMEND_EXPIRE_JITTER_MILLIS);
+        setRedisCache(redisKey, userPage, expireMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 查询所有有标签的用户，逐个解析标签并计算编辑距离
      *
      * @param num       要获取的数量
      * @param loginUser 登录用户信息
-     * @return List<User> 匹配用户列表
+     * @return TopKSelector 编辑距离最小的num个用户
      */
-    @Override
-    public List<User> matchUsers(long num, User loginUser) {
+    private TopKSelector scanMatchUsers(long num, User loginUser) {
         QueryWrapper<User> queryWrapper = new QueryWrapper<>();
         //只需要id和tags列就行，提高查询性能
         queryWrapper.select("id", "tags");
         queryWrapper.isNotNull("tags");
         //获取标签不为空的用户列表，排除空的，减少无用数据
         List<User> userList = userMapper.selectList(queryWrapper);
+        recordRowsScanned("scanMatchUsers", userList.size());
         //获取登录用户的标签
         String tags = loginUser.getTags();
         //将json格式标签转为java对象
         Gson gson = new Gson();
         List<String> tagList = gson.fromJson(tags, new TypeToken<List<String>>() {
         }.getType());
-        //记录用户下标及编辑距离，距离越短，相似度越高
-        List<Pair<User,Long>> list = new ArrayList<>();
-        //遍历所有用户，计算与当前登录用户的编辑距离
-        for (User user : userList) {
+        //只保留编辑距离最小的num个用户，距离越短，相似度越高，距离相同时id小的在前
+        //选择器可以按分片各自计算后合并，这里用collect的合并函数体现
+        long loginUserId = loginUser.getId();
+        return userList.stream().collect(() -> new TopKSelector((int) num), (selector, user) -> {
             //获取用户标签
             String userTags = user.getTags();
             //再次校验用户标签是否存在及是否遍历到当前登录用户
-            if (StringUtils.isBlank(userTags) || user.getId() == loginUser.getId()) {
+            if (StringUtils.isBlank(userTags) || user.getId() == loginUserId) {
                 //如果标签为空（isBlank）或为当前登录用户，不做任何处理
-                continue;
+                return;
             }
             //将用户标签转为java对象
             List<String> userTagList = gson.fromJson(userTags, new TypeToken<List<String>>() {
             }.getType());
             //调用计算相似度的方法，计算编辑距离
             long distance = AlgorithmUtils.minDistance(tagList, userTagList);
-            //将用户和编辑距离添加到list中
-            list.add(new Pair<>(user, distance));
-        }
-        //按编辑距离由小到大排序
-        List<Pair<User,Long>> topUserPairList = list.stream()
-                                                    .sorted((a,b)->(int)(a.getValue()-b.getValue())) //编辑距离两两比较
-                                                    .limit(num) //限制条数
-                                                    .collect(Collectors.toList());
-        //从topUserPairList中取出用户id作为下标，分数作为值，为下面根据id查询最匹配用户列表后的排序做准备
-        List<Long> userIdList = topUserPairList.stream().map(pair->pair
-                .getKey().getId()).collect(Collectors.toList());
-        //获取用户的所有信息，并进行脱敏
-        QueryWrapper<User> userQueryWrapper = new QueryWrapper<>();
-        userQueryWrapper.in("id",userIdList);
-        Map<Long,List<User>> userIdUserListMap = this.list(userQueryWrapper)
-                .stream().map(this::getSafetyUser)
-                .collect(Collectors.groupingBy(User::getId));
+            selector.offer(user.getId(), distance);
+        }, TopKSelector::merge);
+    }
+
+    /**
+     * 同步计算最匹配的用户，匹配引擎可用时顺便保存预计算结果
+     *
+     * @param num       要获取的数量
+     * @param loginUser 登录用户信息
+     * @return List<Long> 按编辑距离由小到大排好序的用户id
+     */
+    private List<Long> computeMatchUserIds(long num, User loginUser) {
+        TopKSelector topKSelector;
+        if (userMatchEngine.isReady()) {
+            //匹配引擎已加载时直接在内存中计算，多算到预计算的人数一起保存
+            topKSelector = userMatchEngine.match(loginUser.getId(), loginUser.getTags(),
+                    Math.max((int) num, MatchResultManager.PRECOMPUTE_NUM));
+            meterRegistry.counter("yupao.user.match.source", "source", "engine").increment();
+            try {
+                matchResultManager.saveMatchResult(loginUser.getId(), topKSelector);
+            } catch (Exception e) {
+                log.error("save match result error, userId={}", loginUser.getId(), e);
+            }
+        } else {
+            //否则查库计算
+            topKSelector = scanMatchUsers(num, loginUser);
+            meterRegistry.counter("yupao.user.match.source", "source", "scan").increment();
+        }
+        long[] topUserIds = topKSelector.sortedIds();
+        int size = (int) Math.min(num, topUserIds.length);
+        List<Long> userIdList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            userIdList.add(topUserIds[i]);
+        }
+        return userIdList;
+    }
+
+    /**
+     * 获取最匹配用户的列表
+     *
+     * @param num       要获取的数量
+     * @param loginUser 登录用户信息
+     * @return List<User> 匹配用户列表
+     */
+    @Override
+    @Timed(value = "yupao.user.match", histogram = true)
+    public List<User> matchUsers(long num, User loginUser) {
+        //优先读取后台预计算的结果
+        List<Long> userIdList = matchResultManager.getMatchUserIds(loginUser.getId(), (int) num);
+        if (userIdList == null) {
+            userIdList = computeMatchUserIds(num, loginUser);
+        } else {
+            meterRegistry.counter("yupao.user.match.source", "source", "precomputed").increment();
+        }
+        if (userIdList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        //从用户资料缓存批量获取脱敏后的用户信息
+        Map<Long, UserVO> userVOMap = userProfileCache.getUserVOMap(userIdList);
         //根据userIdList进行排序
         List<User> finalUserList = new ArrayList<>();
         for(Long userId:userIdList){
-            finalUserList.add(userIdUserListMap.get(userId).get(0));
+            UserVO userVO = userVOMap.get(userId);
+            //查询期间被删除的用户跳过
+            if (userVO != null) {
+                finalUserList.add(toSafetyUser(userVO));
+            }
         }
         return finalUserList;
     }
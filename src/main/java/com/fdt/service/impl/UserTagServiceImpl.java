@@ -0,0 +1,177 @@
+package com.fdt.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fdt.common.ErrorCode;
+import com.fdt.exception.BusinessException;
+import com.fdt.model.domain.User;
+import com.fdt.model.domain.UserTag;
+import com.fdt.service.TagService;
+import com.fdt.service.UserTagService;
+import com.fdt.mapper.UserTagMapper;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
+
+import javax.annotation.Resource;
+import java.util.*;
+
+import static com.fdt.contant.UserContant.USER_TAG_BACKFILLED_KEY;
+
+/**
+* @author 冯德田
+* @description 针对表【user_tag(用户标签关系)】的数据库操作Service实现
+*/
+@Service
+@Slf4j
+public class UserTagServiceImpl extends ServiceImpl<UserTagMapper, UserTag>
+    implements UserTagService{
+
+    /**
+     * 每条insert语句插入的最大行数
+     */
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    @Resource
+    private UserTagMapper userTagMapper;
+
+    @Resource
+    private TagService tagService;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * 根据用户的json标签重建该用户的标签关系
+     *
+     * @param userId   用户id
+     * @param tagsJson json格式的标签列表
+     */
+    @Override
+    public void syncUserTags(long userId, String tagsJson) {
+        User user = new User();
+        user.setId(userId);
+        user.setTags(tagsJson);
+        syncUserTagsBatch(Collections.singletonList(user));
+    }
+
+    /**
+     * 批量重建用户的标签关系
+     * 先删除这批用户原有的关系，再用多行insert写入新的关系
+     *
+     * @param userList 用户列表（需要包含id和tags）
+     * @return int 写入的关系条数
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int syncUserTagsBatch(List<User> userList) {
+        if (CollectionUtils.isEmpty(userList)) {
+            return 0;
+        }
+        //解析每个用户的标签
+        Map<Long, Set<String>> userTagNameMap = new LinkedHashMap<>();
+        Set<String> allTagNameSet = new HashSet<>();
+        for (User user : userList) {
+            Set<String> tagNameSet = parseTags(user.getTags());
+            userTagNameMap.put(user.getId(), tagNameSet);
+            allTagNameSet.addAll(tagNameSet);
+        }
+        Map<String, Long> tagIdMap = tagService.getOrCreateTagIds(allTagNameSet);
+        //删除旧的关系
+        QueryWrapper<UserTag> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("userId", userTagNameMap.keySet());
+        userTagMapper.delete(queryWrapper);
+        //写入新的关系
+        List<UserTag> userTagList = new ArrayList<>();
+        for (Map.Entry<Long, Set<String>> entry : userTagNameMap.entrySet()) {
+            for (String tagName : entry.getValue()) {
+                Long tagId = tagIdMap.get(tagName);
+                if (tagId == null) {
+                    continue;
+                }
+                UserTag userTag = new UserTag();
+                userTag.setUserId(entry.getKey());
+                userTag.setTagId(tagId);
+                userTagList.add(userTag);
+            }
+        }
+        int count = 0;
+        for (int from = 0; from < userTagList.size(); from += INSERT_BATCH_SIZE) {
+            int to = Math.min(from + INSERT_BATCH_SIZE, userTagList.size());
+            count += userTagMapper.insertIgnoreBatch(userTagList.subList(from, to));
+        }
+        return count;
+    }
+
+    /**
+     * 查询拥有全部标签的用户id
+     *
+     * @param tagNameList 标签列表
+     * @return List<Long> 用户id列表
+     */
+    @Override
+    public List<Long> listUserIdsByTagNames(List<String> tagNameList) {
+        if (CollectionUtils.isEmpty(tagNameList)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        Set<String> tagNameSet = new HashSet<>(tagNameList);
+        return userTagMapper.listUserIdsByTagNames(tagNameSet, tagNameSet.size());
+    }
+
+    /**
+     * 标签关系是否已经完整回填，redis不可用时按未回填处理
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean isBackfilled() {
+        try {
+            return redissonClient.getBucket(USER_TAG_BACKFILLED_KEY).isExists();
+        } catch (Exception e) {
+            log.error("read user tag backfill state error", e);
+            return false;
+        }
+    }
+
+    /**
+     * 删除用户的全部标签关系
+     *
+     * @param userId 用户id
+     */
+    @Override
+    public void removeUserTags(long userId) {
+        QueryWrapper<UserTag> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("userId", userId);
+        userTagMapper.delete(queryWrapper);
+    }
+
+    private Set<String> parseTags(String tagsJson) {
+        if (StringUtils.isBlank(tagsJson)) {
+            return Collections.emptySet();
+        }
+        try {
+            Set<String> tagNameSet = gson.fromJson(tagsJson, new TypeToken<Set<String>>() {
+            }.getType());
+            if (tagNameSet == null) {
+                return Collections.emptySet();
+            }
+            tagNameSet.removeIf(StringUtils::isBlank);
+            return tagNameSet;
+        } catch (JsonSyntaxException e) {
+            log.warn("parse user tags error, tags={}", tagsJson);
+            return Collections.emptySet();
+        }
+    }
+}
+
+
+
+
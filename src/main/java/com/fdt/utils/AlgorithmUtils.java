@@ -44,4 +44,83 @@ public class AlgorithmUtils {
         }
         return d[n][m];
     }
+
+    /**
+     * 每个线程复用的两行滚动缓冲区，避免每次比较都分配矩阵
+     */
+    private static final ThreadLocal<int[][]> ROW_BUFFER = ThreadLocal.withInitial(() -> new int[2][16]);
+
+    /**
+     * 编辑距离算法（标签编号版）
+     * 标签预先编码为整数，只保留两行滚动计算，缓冲区线程内复用，不产生对象分配
+     * @param tags1 标签1的编号
+     * @param tags2 标签2的编号
+     * @return int 编辑距离
+     */
+    public static int minDistance(int[] tags1, int[] tags2) {
+        return boundedMinDistance(tags1, tags2, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 有上限的编辑距离算法（标签编号版）
+     * 一行中的最小值就是最终距离的下界，下界超过上限时提前结束
+     * @param tags1 标签1的编号
+     * @param tags2 标签2的编号
+     * @param maxDistance 距离上限，一般传当前第k名的距离
+     * @return int 编辑距离，超过上限时返回 maxDistance + 1（maxDistance 为 Integer.MAX_VALUE 时不截断）
+     */
+    public static int boundedMinDistance(int[] tags1, int[] tags2, int maxDistance) {
+        int n = tags1.length;
+        int m = tags2.length;
+
+        if (n * m == 0) {
+            return cap(n + m, maxDistance);
+        }
+        //长度差是编辑距离的下界
+        if (Math.abs(n - m) > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        int[][] buffer = ROW_BUFFER.get();
+        if (buffer[0].length < m + 1) {
+            buffer = new int[2][Math.max(m + 1, buffer[0].length * 2)];
+            ROW_BUFFER.set(buffer);
+        }
+        int[] prev = buffer[0];
+        int[] curr = buffer[1];
+        for (int j = 0; j < m + 1; j++) {
+            prev[j] = j;
+        }
+
+        for (int i = 1; i < n + 1; i++) {
+            curr[0] = i;
+            int rowMin = i;
+            int tag1 = tags1[i - 1];
+            for (int j = 1; j < m + 1; j++) {
+                int left = prev[j] + 1;
+                int down = curr[j - 1] + 1;
+                int left_down = prev[j - 1];
+                if (tag1 != tags2[j - 1]) {
+                    left_down += 1;
+                }
+                int d = Math.min(left, Math.min(down, left_down));
+                curr[j] = d;
+                if (d < rowMin) {
+                    rowMin = d;
+                }
+            }
+            //后面的行不会比这一行的最小值更小
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+        return cap(prev[m], maxDistance);
+    }
+
+    private static int cap(int distance, int maxDistance) {
+        return distance > maxDistance ? maxDistance + 1 : distance;
+    }
 }
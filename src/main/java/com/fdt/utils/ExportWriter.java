@@ -0,0 +1,177 @@
+package com.fdt.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 导出写入器
+ * 逐行写出NDJSON（每行一个json对象）或CSV，写一行就丢一行，导出多少行内存占用都不变
+ * 非线程安全，一次导出使用一个实例
+ *
+ * @author fdt
+ */
+public class ExportWriter {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    public static final String FORMAT_CSV = "csv";
+
+    /**
+     * 每写多少行刷新一次，让客户端尽早收到数据
+     */
+    private static final int FLUSH_ROWS = 1000;
+
+    /**
+     * CSV中会被表格软件当作公式开头的字符
+     */
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final Writer writer;
+
+    private final boolean csv;
+
+    private final String[] columns;
+
+    //值为null的列也写出，每行的字段都一样
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    private long rowCount = 0;
+
+    public ExportWriter(Writer writer, String format, String... columns) {
+        if (!isSupportedFormat(format)) {
+            throw new IllegalArgumentException("unsupported export format: " + format);
+        }
+        this.writer = writer;
+        this.csv = FORMAT_CSV.equals(format);
+        this.columns = columns;
+    }
+
+    /**
+     * 是否支持该导出格式
+     *
+     * @param format 导出格式
+     * @return boolean
+     */
+    public static boolean isSupportedFormat(String format) {
+        return FORMAT_NDJSON.equals(format) || FORMAT_CSV.equals(format);
+    }
+
+    /**
+     * 导出格式对应的响应类型
+     *
+     * @param format 导出格式
+     * @return String Content-Type
+     */
+    public static String getContentType(String format) {
+        return FORMAT_CSV.equals(format) ? "text/csv" : "application/x-ndjson";
+    }
+
+    /**
+     * 写表头，只有CSV有表头
+     */
+    public void writeHeader() {
+        if (!csv) {
+            return;
+        }
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escapeCsv(columns[i]));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写一行，值的顺序和列名一致
+     *
+     * @param values 列值
+     */
+    public void writeRow(Object... values) {
+        try {
+            if (csv) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(escapeCsv(format(values[i])));
+                }
+            } else {
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (int i = 0; i < values.length; i++) {
+                    row.put(columns[i], toJsonValue(values[i]));
+                }
+                writer.write(gson.toJson(row));
+            }
+            writer.write('\n');
+            if (++rowCount % FLUSH_ROWS == 0) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            //客户端断开等写出失败，抛出后中止查询
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写完后刷新
+     *
+     * @return long 写出的行数
+     */
+    public long finish() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rowCount;
+    }
+
+    private String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Date) {
+            return dateFormat.format((Date) value);
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 数字和布尔值保持原类型写成json数字和布尔值，日期按格式转成字符串，其他值转成字符串
+     */
+    private Object toJsonValue(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return format(value);
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        //以 = + - @ 等开头的值会被excel当作公式执行，前面加单引号按文本显示
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,176 @@
+package com.fdt.utils;
+
+import java.util.Arrays;
+
+/**
+ * Top-K 选择器
+ * 保留分数最小的k个 (id, 分数)，分数相同时id小的优先，结果是确定的
+ * 内部是以最差元素为堆顶的大顶堆，id和分数存放在两个原始类型数组中，offer不产生对象分配
+ * 可以按分片各自选择后再用 merge 合并，适合并行计算
+ *
+ * @author fdt
+ */
+public class TopKSelector {
+
+    private final int k;
+
+    private final long[] ids;
+
+    private final long[] scores;
+
+    private int size = 0;
+
+    public TopKSelector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        this.k = k;
+        this.ids = new long[k];
+        this.scores = new long[k];
+    }
+
+    /**
+     * 尝试加入一个元素
+     *
+     * @param id    id
+     * @param score 分数，越小越好
+     * @return boolean 是否进入了当前的top-k
+     */
+    public boolean offer(long id, long score) {
+        if (size < k) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        //比堆顶（当前第k名）还差，直接丢弃
+        if (!better(id, score, ids[0], scores[0])) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * 当前进入top-k需要的分数上限
+     * 未选满时返回 Long.MAX_VALUE，选满后返回第k名的分数，分数大于它的元素不可能进入top-k
+     *
+     * @return long 分数上限
+     */
+    public long threshold() {
+        return size < k ? Long.MAX_VALUE : scores[0];
+    }
+
+    /**
+     * 合并另一个选择器的结果
+     *
+     * @param other 另一个选择器
+     * @return TopKSelector 当前选择器
+     */
+    public TopKSelector merge(TopKSelector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按分数升序（分数相同按id升序）返回id
+     *
+     * @return long[] id数组
+     */
+    public long[] sortedIds() {
+        int[] order = sortedOrder();
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = ids[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * 按分数升序（分数相同按id升序）返回分数，与 sortedIds 一一对应
+     *
+     * @return long[] 分数数组
+     */
+    public long[] sortedScores() {
+        int[] order = sortedOrder();
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = scores[order[i]];
+        }
+        return result;
+    }
+
+    private int[] sortedOrder() {
+        //k很小，直接插入排序下标
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = i;
+            while (j > 0 && better(ids[i], scores[i], ids[order[j - 1]], scores[order[j - 1]])) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+        return order;
+    }
+
+    /**
+     * (id1, score1) 是否排在 (id2, score2) 前面
+     */
+    private static boolean better(long id1, long score1, long id2, long score2) {
+        return score1 < score2 || (score1 == score2 && id1 < id2);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            //大顶堆：子节点比父节点差时上移
+            if (!better(ids[parent], scores[parent], ids[index], scores[index])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(ids[left], scores[left], ids[right], scores[right])) {
+                worst = right;
+            }
+            if (!better(ids[index], scores[index], ids[worst], scores[worst])) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long tempId = ids[i];
+        ids[i] = ids[j];
+        ids[j] = tempId;
+        long tempScore = scores[i];
+        scores[i] = scores[j];
+        scores[j] = tempScore;
+    }
+
+    @Override
+    public String toString() {
+        return "TopKSelector{ids=" + Arrays.toString(sortedIds()) + ", scores=" + Arrays.toString(sortedScores()) + "}";
+    }
+}
@@ -0,0 +1,72 @@
+package com.fdt.benchmark;
+
+import com.fdt.convert.TeamConvert;
+import com.fdt.convert.UserConvert;
+import com.fdt.model.domain.Team;
+import com.fdt.model.domain.User;
+import com.fdt.model.vo.TeamUserVO;
+import com.fdt.model.vo.UserVO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.BeanUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对象转换基准测试：队伍列表每行的 Team -> TeamUserVO 和 User -> UserVO
+ * 比较反射的 BeanUtils.copyProperties 和MapStruct编译期生成的转换
+ *
+ * @author fdt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BeanCopyBenchmark {
+
+    private static final int ROW_NUM = 1024;
+
+    private List<Team> teamList;
+
+    private List<User> userList;
+
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        teamList = BenchmarkData.randomTeams(ROW_NUM);
+        userList = BenchmarkData.randomUsers(ROW_NUM);
+    }
+
+    @Benchmark
+    public TeamUserVO teamBeanUtils() {
+        index = (index + 1) & (ROW_NUM - 1);
+        TeamUserVO teamUserVO = new TeamUserVO();
+        BeanUtils.copyProperties(teamList.get(index), teamUserVO);
+        return teamUserVO;
+    }
+
+    @Benchmark
+    public TeamUserVO teamMapStruct() {
+        index = (index + 1) & (ROW_NUM - 1);
+        return TeamConvert.INSTANCE.toTeamUserVO(teamList.get(index));
+    }
+
+    @Benchmark
+    public UserVO userBeanUtils() {
+        index = (index + 1) & (ROW_NUM - 1);
+        User user = userList.get(index);
+        UserVO userVO = new UserVO();
+        BeanUtils.copyProperties(user, userVO);
+        userVO.setUserStatus(user.getStatus());
+        return userVO;
+    }
+
+    @Benchmark
+    public UserVO userMapStruct() {
+        index = (index + 1) & (ROW_NUM - 1);
+        return UserConvert.INSTANCE.toUserVO(userList.get(index));
+    }
+}
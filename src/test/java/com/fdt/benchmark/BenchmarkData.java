@@ -0,0 +1,99 @@
+package com.fdt.benchmark;
+
+import com.fdt.model.domain.Team;
+import com.fdt.model.domain.User;
+import com.google.gson.Gson;
+
+import java.util.*;
+
+/**
+ * 基准测试用的模拟数据，固定随机种子，每次生成的数据相同
+ *
+ * @author fdt
+ */
+public class BenchmarkData {
+
+    public static final String[] TAGS = {
+            "java", "python", "c++", "go", "rust", "javascript", "vue", "react", "spring", "mysql",
+            "redis", "docker", "linux", "算法", "前端", "后端", "全栈", "测试", "运维", "产品",
+            "男", "女", "大一", "大二", "大三", "大四", "研一", "研二", "工作", "考研",
+            "乐观", "内向", "外向", "篮球", "足球", "羽毛球", "游泳", "健身", "摄影", "音乐",
+            "电影", "阅读", "旅行", "美食", "游戏", "动漫", "绘画", "写作", "单身", "恋爱"
+    };
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 生成指定数量的用户，id从1开始，每个用户1~8个不重复的标签
+     *
+     * @param count 用户数量
+     * @return List<User> 用户列表
+     */
+    public static List<User> randomUsers(int count) {
+        Random random = new Random(42);
+        List<User> userList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setId(i + 1);
+            user.setUsername("user" + i);
+            user.setUserAccount("account" + i);
+            user.setAvatarUrl("https://gw.alipayobjects.com/zos/rmsportal/eeHMaZBwmTvLdIwMfBpg.png");
+            user.setGender(i % 2);
+            user.setUserPassword("b0dd3697a192885d7c055db46155b26a");
+            user.setPhone("123");
+            user.setEmail("123@qq.com");
+            user.setTags(GSON.toJson(randomTagList(random)));
+            user.setProfile("0");
+            user.setStatus(0);
+            user.setUserRole(0);
+            user.setCreateTime(new Date());
+            user.setUpdateTime(new Date());
+            user.setIsDelete(0);
+            user.setPlanetCode(String.valueOf(i));
+            userList.add(user);
+        }
+        return userList;
+    }
+
+    /**
+     * 生成指定数量的队伍，id从1开始
+     *
+     * @param count 队伍数量
+     * @return List<Team> 队伍列表
+     */
+    public static List<Team> randomTeams(int count) {
+        Random random = new Random(42);
+        List<Team> teamList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Team team = new Team();
+            team.setId(i + 1L);
+            team.setName("team" + i);
+            team.setDescription("队伍描述" + i);
+            team.setMaxNum(2 + random.nextInt(19));
+            team.setExpireTime(new Date(System.currentTimeMillis() + 24 * 60 * 60 * 1000L));
+            team.setUserId(1L + random.nextInt(count));
+            team.setStatus(random.nextInt(3));
+            team.setPassword("12345678");
+            team.setCreateTime(new Date());
+            team.setUpdateTime(new Date());
+            team.setIsDelete(0);
+            teamList.add(team);
+        }
+        return teamList;
+    }
+
+    /**
+     * 随机生成1~8个不重复的标签
+     *
+     * @param random 随机数
+     * @return List<String> 标签列表
+     */
+    public static List<String> randomTagList(Random random) {
+        int tagNum = 1 + random.nextInt(8);
+        Set<String> tagSet = new LinkedHashSet<>();
+        while (tagSet.size() < tagNum) {
+            tagSet.add(TAGS[random.nextInt(TAGS.length)]);
+        }
+        return new ArrayList<>(tagSet);
+    }
+}
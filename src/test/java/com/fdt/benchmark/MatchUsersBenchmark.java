@@ -0,0 +1,121 @@
+package com.fdt.benchmark;
+
+import com.fdt.manager.UserMatchEngine;
+import com.fdt.model.domain.User;
+import com.fdt.utils.AlgorithmUtils;
+import com.fdt.utils.TopKSelector;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.math3.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 匹配用户打分循环基准测试：原来的全量排序、逐个解析json后取前k个、预编码的匹配引擎
+ * 不包含查库，只比较内存中的计算
+ *
+ * @author fdt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class MatchUsersBenchmark {
+
+    private static final Type TAG_LIST_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+
+    private static final int MATCH_NUM = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    public int userNum;
+
+    private List<User> userList;
+
+    private UserMatchEngine userMatchEngine;
+
+    private User loginUser;
+
+    private final Gson gson = new Gson();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        userList = BenchmarkData.randomUsers(userNum);
+        userMatchEngine = new UserMatchEngine();
+        for (User user : userList) {
+            userMatchEngine.updateUserTags(user.getId(), user.getTags());
+        }
+        loginUser = userList.get(0);
+    }
+
+    /**
+     * 优化前 UserServiceImpl.matchUsers 查库后的代码（原样保留）：所有用户和距离放进列表，整体排序后取前num个
+     */
+    @Benchmark
+    public List<Long> baselineSort() {
+        long num = MATCH_NUM;
+        //获取登录用户的标签
+        String tags = loginUser.getTags();
+        //将json格式标签转为java对象
+        Gson gson = new Gson();
+        List<String> tagList = gson.fromJson(tags, new TypeToken<List<String>>() {
+        }.getType());
+        //记录用户下标及编辑距离，距离越短，相似度越高
+        List<Pair<User,Long>> list = new ArrayList<>();
+        //遍历所有用户，计算与当前登录用户的编辑距离
+        for (User user : userList) {
+            //获取用户标签
+            String userTags = user.getTags();
+            //再次校验用户标签是否存在及是否遍历到当前登录用户
+            if (StringUtils.isBlank(userTags) || user.getId() == loginUser.getId()) {
+                //如果标签为空（isBlank）或为当前登录用户，不做任何处理
+                continue;
+            }
+            //将用户标签转为java对象
+            List<String> userTagList = gson.fromJson(userTags, new TypeToken<List<String>>() {
+            }.getType());
+            //调用计算相似度的方法，计算编辑距离
+            long distance = AlgorithmUtils.minDistance(tagList, userTagList);
+            //将用户和编辑距离添加到list中
+            list.add(new Pair<>(user, distance));
+        }
+        //按编辑距离由小到大排序
+        List<Pair<User,Long>> topUserPairList = list.stream()
+                                                    .sorted((a,b)->(int)(a.getValue()-b.getValue())) //编辑距离两两比较
+                                                    .limit(num) //限制条数
+                                                    .collect(Collectors.toList());
+        //从topUserPairList中取出用户id作为下标，分数作为值，为下面根据id查询最匹配用户列表后的排序做准备
+        return topUserPairList.stream().map(pair->pair
+                .getKey().getId()).collect(Collectors.toList());
+    }
+
+    /**
+     * 与 UserServiceImpl 中匹配引擎不可用时的扫描一致：逐个解析json，只保留距离最小的num个
+     */
+    @Benchmark
+    public long[] gsonScan() {
+        List<String> tagList = gson.fromJson(loginUser.getTags(), TAG_LIST_TYPE);
+        TopKSelector topKSelector = new TopKSelector(MATCH_NUM);
+        for (User user : userList) {
+            if (user.getId() == loginUser.getId()) {
+                continue;
+            }
+            List<String> userTagList = gson.fromJson(user.getTags(), TAG_LIST_TYPE);
+            topKSelector.offer(user.getId(), AlgorithmUtils.minDistance(tagList, userTagList));
+        }
+        return topKSelector.sortedIds();
+    }
+
+    @Benchmark
+    public long[] matchEngine() {
+        return userMatchEngine.match(loginUser.getId(), loginUser.getTags(), MATCH_NUM).sortedIds();
+    }
+}
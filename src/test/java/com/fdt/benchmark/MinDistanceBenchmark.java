@@ -0,0 +1,78 @@
+package com.fdt.benchmark;
+
+import com.fdt.utils.AlgorithmUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编辑距离基准测试：字符串列表版、标签编号版、有上限的标签编号版
+ *
+ * @author fdt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MinDistanceBenchmark {
+
+    private static final int PAIR_NUM = 1024;
+
+    private List<List<String>> tagLists1;
+
+    private List<List<String>> tagLists2;
+
+    private int[][] tagCodes1;
+
+    private int[][] tagCodes2;
+
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        Map<String, Integer> tagDictionary = new HashMap<>();
+        for (int i = 0; i < BenchmarkData.TAGS.length; i++) {
+            tagDictionary.put(BenchmarkData.TAGS[i], i);
+        }
+        tagLists1 = new ArrayList<>(PAIR_NUM);
+        tagLists2 = new ArrayList<>(PAIR_NUM);
+        tagCodes1 = new int[PAIR_NUM][];
+        tagCodes2 = new int[PAIR_NUM][];
+        for (int i = 0; i < PAIR_NUM; i++) {
+            List<String> tagList1 = BenchmarkData.randomTagList(random);
+            List<String> tagList2 = BenchmarkData.randomTagList(random);
+            tagLists1.add(tagList1);
+            tagLists2.add(tagList2);
+            tagCodes1[i] = tagList1.stream().mapToInt(tagDictionary::get).toArray();
+            tagCodes2[i] = tagList2.stream().mapToInt(tagDictionary::get).toArray();
+        }
+    }
+
+    @Benchmark
+    public int stringList() {
+        int i = next();
+        return AlgorithmUtils.minDistance(tagLists1.get(i), tagLists2.get(i));
+    }
+
+    @Benchmark
+    public int tagCode() {
+        int i = next();
+        return AlgorithmUtils.minDistance(tagCodes1[i], tagCodes2[i]);
+    }
+
+    @Benchmark
+    public int boundedTagCode() {
+        int i = next();
+        //匹配时的上限一般是当前第k名的距离，取一个较小值模拟
+        return AlgorithmUtils.boundedMinDistance(tagCodes1[i], tagCodes2[i], 3);
+    }
+
+    private int next() {
+        index = (index + 1) & (PAIR_NUM - 1);
+        return index;
+    }
+}
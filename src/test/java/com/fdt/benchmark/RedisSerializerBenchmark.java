@@ -0,0 +1,63 @@
+package com.fdt.benchmark;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fdt.config.RedisTemplateConfig;
+import com.fdt.model.domain.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis值序列化基准测试：一页20个用户的推荐结果，比较jdk序列化和json序列化
+ * 每种序列化方式的字节数在初始化时打印
+ *
+ * @author fdt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RedisSerializerBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"jdk", "json"})
+    public String serializerType;
+
+    private RedisSerializer<Object> serializer;
+
+    private Page<User> userPage;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        serializer = "jdk".equals(serializerType) ? RedisSerializer.java() : RedisTemplateConfig.createJsonRedisSerializer();
+        List<User> userList = BenchmarkData.randomUsers(PAGE_SIZE);
+        userList.forEach(user -> user.setUserPassword(null));
+        userPage = new Page<>(1, PAGE_SIZE);
+        userPage.setTotal(1000);
+        userPage.setRecords(userList);
+        payload = serializer.serialize(userPage);
+        System.out.println(serializerType + " payload bytes: " + payload.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(userPage);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(payload);
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return serializer.deserialize(serializer.serialize(userPage));
+    }
+}
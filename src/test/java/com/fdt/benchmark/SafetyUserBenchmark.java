@@ -0,0 +1,41 @@
+package com.fdt.benchmark;
+
+import com.fdt.model.domain.User;
+import com.fdt.service.impl.UserServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户脱敏拷贝基准测试
+ *
+ * @author fdt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SafetyUserBenchmark {
+
+    private static final int USER_NUM = 1024;
+
+    private final UserServiceImpl userService = new UserServiceImpl();
+
+    private List<User> userList;
+
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        userList = BenchmarkData.randomUsers(USER_NUM);
+    }
+
+    @Benchmark
+    public User getSafetyUser() {
+        index = (index + 1) & (USER_NUM - 1);
+        return userService.getSafetyUser(userList.get(index));
+    }
+}
@@ -0,0 +1,87 @@
+package com.fdt.benchmark;
+
+import com.fdt.manager.UserTagIndexManager;
+import com.fdt.model.domain.User;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 按标签搜索用户基准测试：逐个解析json的内存过滤 与 标签倒排索引求交集
+ *
+ * @author fdt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class TagSearchBenchmark {
+
+    private static final Type TAG_SET_TYPE = new TypeToken<Set<String>>() {
+    }.getType();
+
+    @Param({"10000", "100000", "1000000"})
+    public int userNum;
+
+    private List<User> userList;
+
+    private UserTagIndexManager userTagIndexManager;
+
+    private final Gson gson = new Gson();
+
+    private final List<String> tagNameList = Arrays.asList("java", "后端");
+
+    private String oneTags;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        userList = BenchmarkData.randomUsers(userNum);
+        userTagIndexManager = new UserTagIndexManager();
+        for (User user : userList) {
+            userTagIndexManager.updateUserTags(user.getId(), user.getTags());
+        }
+        oneTags = userList.get(0).getTags();
+    }
+
+    /**
+     * 与 UserServiceImpl 中原来的内存过滤一致
+     */
+    @Benchmark
+    public List<User> gsonFilter() {
+        return userList.stream().filter(user -> {
+            String tagsStr = user.getTags();
+            if (StringUtils.isBlank(tagsStr)) {
+                return false;
+            }
+            Set<String> tempTagNameSet = gson.fromJson(tagsStr, TAG_SET_TYPE);
+            tempTagNameSet = Optional.ofNullable(tempTagNameSet).orElse(new HashSet<>());
+            for (String tageName : tagNameList) {
+                if (!tempTagNameSet.contains(tageName)) {
+                    return false;
+                }
+            }
+            return true;
+        }).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public long[] invertedIndex() {
+        return userTagIndexManager.searchUserIds(tagNameList);
+    }
+
+    /**
+     * 单次解析json标签的开销
+     */
+    @Benchmark
+    public Set<String> gsonParseTags() {
+        return gson.fromJson(oneTags, TAG_SET_TYPE);
+    }
+}
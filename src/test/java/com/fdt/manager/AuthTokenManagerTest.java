@@ -0,0 +1,93 @@
+package com.fdt.manager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class AuthTokenManagerTest {
+
+    private AuthTokenManager authTokenManager;
+
+    @BeforeEach
+    void setUp() {
+        authTokenManager = newAuthTokenManager("test-secret", 3600);
+    }
+
+    @Test
+    void testIssueAndVerify() {
+        String token = authTokenManager.issue(10, 1);
+        AuthTokenManager.TokenClaims tokenClaims = authTokenManager.verify(bearerRequest(token));
+        Assertions.assertNotNull(tokenClaims);
+        Assertions.assertEquals(10, tokenClaims.getUserId());
+        Assertions.assertEquals(1, tokenClaims.getUserRole());
+        //cookie中的令牌也能识别
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getCookies()).thenReturn(new Cookie[]{new Cookie("yupao_token", token)});
+        Assertions.assertEquals(10, authTokenManager.verify(request).getUserId());
+    }
+
+    @Test
+    void testVerifyTampered() {
+        String token = authTokenManager.issue(10, 0);
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+        //把自己改成管理员，签名不匹配
+        String forgedPayload = payload.replaceFirst("^10:0:", "10:1:");
+        String forgedToken = Base64.getUrlEncoder().withoutPadding().encodeToString(forgedPayload.getBytes(StandardCharsets.UTF_8))
+                + "." + parts[1];
+        Assertions.assertNull(authTokenManager.verify(bearerRequest(forgedToken)));
+        //其他密钥签发的令牌
+        String otherToken = newAuthTokenManager("other-secret", 3600).issue(10, 0);
+        Assertions.assertNull(authTokenManager.verify(bearerRequest(otherToken)));
+        Assertions.assertNull(authTokenManager.verify(bearerRequest("not-a-token")));
+        Assertions.assertNull(authTokenManager.verify(bearerRequest("!!!.???")));
+        Assertions.assertNull(authTokenManager.verify(Mockito.mock(HttpServletRequest.class)));
+    }
+
+    @Test
+    void testVerifyExpired() {
+        AuthTokenManager expiredTokenManager = newAuthTokenManager("test-secret", -1);
+        String token = expiredTokenManager.issue(10, 0);
+        Assertions.assertNull(authTokenManager.verify(bearerRequest(token)));
+    }
+
+    @Test
+    void testVerifyRevoked() {
+        String token = authTokenManager.issue(10, 0);
+        AuthTokenManager.TokenClaims tokenClaims = authTokenManager.verify(bearerRequest(token));
+        authTokenManager.revoke(tokenClaims);
+        Assertions.assertNull(authTokenManager.verify(bearerRequest(token)));
+        //同一用户新签发的令牌不受影响
+        Assertions.assertNotNull(authTokenManager.verify(bearerRequest(authTokenManager.issue(10, 0))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AuthTokenManager newAuthTokenManager(String secret, long expireSeconds) {
+        StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        Mockito.when(stringRedisTemplate.opsForZSet()).thenReturn(Mockito.mock(ZSetOperations.class));
+        AuthTokenManager authTokenManager = new AuthTokenManager();
+        ReflectionTestUtils.setField(authTokenManager, "mode", "token");
+        ReflectionTestUtils.setField(authTokenManager, "secret", secret);
+        ReflectionTestUtils.setField(authTokenManager, "expireSeconds", expireSeconds);
+        ReflectionTestUtils.setField(authTokenManager, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(authTokenManager, "redisMessageListenerContainer", Mockito.mock(RedisMessageListenerContainer.class));
+        authTokenManager.init();
+        return authTokenManager;
+    }
+
+    private static HttpServletRequest bearerRequest(String token) {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,112 @@
+package com.fdt.manager;
+
+import com.fdt.mapper.TeamUserMapper;
+import com.fdt.model.domain.TeamUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+public class TeamSeatManagerTest {
+
+    private static final String EXPIRE_SECONDS = String.valueOf(7 * 24 * 60 * 60L);
+
+    private TeamUserMapper teamUserMapper;
+
+    private TeamSeatManager teamSeatManager;
+
+    //每次执行脚本的参数：脚本、键、参数
+    private final List<Object[]> evalList = new ArrayList<>();
+
+    //依次作为脚本的返回值
+    private final Queue<Long> resultQueue = new LinkedList<>();
+
+    @BeforeEach
+    void setUp() {
+        RScript script = Mockito.mock(RScript.class, invocation -> {
+            if ("eval".equals(invocation.getMethod().getName())) {
+                evalList.add(invocation.getArguments());
+                return resultQueue.isEmpty() ? 1L : resultQueue.poll();
+            }
+            return null;
+        });
+        RedissonClient redissonClient = Mockito.mock(RedissonClient.class);
+        Mockito.when(redissonClient.getScript(StringCodec.INSTANCE)).thenReturn(script);
+        teamUserMapper = Mockito.mock(TeamUserMapper.class);
+        teamSeatManager = new TeamSeatManager();
+        ReflectionTestUtils.setField(teamSeatManager, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(teamSeatManager, "teamUserMapper", teamUserMapper);
+        ReflectionTestUtils.setField(teamSeatManager, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testReserveResult() {
+        resultQueue.addAll(Arrays.asList(1L, -1L, -2L, -3L));
+        Assertions.assertEquals(TeamSeatManager.SeatResult.SUCCESS, teamSeatManager.reserve(1, 10, 3));
+        Assertions.assertEquals(TeamSeatManager.SeatResult.ALREADY_JOINED, teamSeatManager.reserve(1, 10, 3));
+        Assertions.assertEquals(TeamSeatManager.SeatResult.USER_JOIN_LIMIT, teamSeatManager.reserve(1, 10, 3));
+        Assertions.assertEquals(TeamSeatManager.SeatResult.TEAM_FULL, teamSeatManager.reserve(1, 10, 3));
+        //队伍集合和用户集合在一个脚本中校验并占座，每次占座都刷新过期时间
+        Object[] args = evalList.get(0);
+        Assertions.assertEquals(Arrays.asList("yupao:team:seat:team:1", "yupao:team:seat:user:10"), args[3]);
+        Assertions.assertEquals(Arrays.asList("10", "1", String.valueOf(TeamSeatManager.MAX_JOIN_TEAM_NUM), "3", EXPIRE_SECONDS),
+                Arrays.asList(args).subList(4, args.length));
+        Mockito.verifyNoInteractions(teamUserMapper);
+    }
+
+    @Test
+    void testReserveLoadsMissingSets() {
+        TeamUser member = new TeamUser();
+        member.setUserId(11L);
+        TeamUser joinedTeam = new TeamUser();
+        joinedTeam.setTeamId(2L);
+        Mockito.when(teamUserMapper.selectList(Mockito.any()))
+                .thenReturn(Collections.singletonList(member), Collections.singletonList(joinedTeam));
+        //集合未加载，加载队伍集合和用户集合后重试
+        resultQueue.addAll(Arrays.asList(-9L, 1L, 1L, 1L));
+        Assertions.assertEquals(TeamSeatManager.SeatResult.SUCCESS, teamSeatManager.reserve(1, 10, 3));
+        Assertions.assertEquals(4, evalList.size());
+        Assertions.assertEquals(Collections.singletonList("yupao:team:seat:team:1"), evalList.get(1)[3]);
+        Assertions.assertEquals(Arrays.asList(EXPIRE_SECONDS, "11"), Arrays.asList(evalList.get(1)).subList(4, evalList.get(1).length));
+        Assertions.assertEquals(Collections.singletonList("yupao:team:seat:user:10"), evalList.get(2)[3]);
+        Assertions.assertEquals(Arrays.asList(EXPIRE_SECONDS, "2"), Arrays.asList(evalList.get(2)).subList(4, evalList.get(2).length));
+        Assertions.assertEquals(evalList.get(0)[1], evalList.get(3)[1]);
+    }
+
+    @Test
+    void testReserveLoadFailed() {
+        Mockito.when(teamUserMapper.selectList(Mockito.any())).thenReturn(Collections.emptyList());
+        resultQueue.addAll(Arrays.asList(-9L, 1L, 1L, -9L));
+        Assertions.assertThrows(IllegalStateException.class, () -> teamSeatManager.reserve(1, 10, 3));
+    }
+
+    @Test
+    void testRelease() {
+        teamSeatManager.release(1, 10);
+        Object[] args = evalList.get(0);
+        Assertions.assertEquals(Arrays.asList("yupao:team:seat:team:1", "yupao:team:seat:user:10"), args[3]);
+        Assertions.assertEquals(Arrays.asList("10", "1", EXPIRE_SECONDS), Arrays.asList(args).subList(4, args.length));
+    }
+
+    @Test
+    void testRemoveTeam() {
+        //没有事务时直接执行
+        teamSeatManager.removeTeamAfterCommit(1);
+        Object[] args = evalList.get(0);
+        Assertions.assertEquals(Collections.singletonList("yupao:team:seat:team:1"), args[3]);
+        //用户集合的键由脚本按前缀拼出
+        Assertions.assertEquals(Arrays.asList("yupao:team:seat:user:", "1"), Arrays.asList(args).subList(4, args.length));
+    }
+}
@@ -0,0 +1,159 @@
+package com.fdt.manager;
+
+import com.fdt.mapper.TeamUserMapper;
+import com.fdt.model.domain.TeamUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class TeamUserWriteBehindTest {
+
+    private Path walDir;
+
+    private TeamUserMapper teamUserMapper;
+
+    private TeamSeatManager teamSeatManager;
+
+    private RedissonClient redissonClient;
+
+    private TeamUserWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        walDir = Files.createTempDirectory("team-user-wal");
+        teamUserMapper = Mockito.mock(TeamUserMapper.class);
+        Mockito.when(teamUserMapper.listByPair(Mockito.anyList())).thenReturn(Collections.emptyList());
+        //队伍集合都未加载，按最后一个事件的类型写入
+        teamSeatManager = Mockito.mock(TeamSeatManager.class);
+        Mockito.when(teamSeatManager.getMembership(Mockito.anyList()))
+                .thenAnswer(invocation -> new ArrayList<Boolean>(Collections.nCopies(((List<?>) invocation.getArgument(0)).size(), null)));
+        RLock lock = Mockito.mock(RLock.class);
+        Mockito.when(lock.tryLock(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(TimeUnit.class))).thenReturn(true);
+        Mockito.when(lock.isHeldByCurrentThread()).thenReturn(true);
+        redissonClient = Mockito.mock(RedissonClient.class);
+        Mockito.when(redissonClient.getLock(Mockito.anyString())).thenReturn(lock);
+        writeBehind = newWriteBehind();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        writeBehind.destroy();
+        try (Stream<Path> pathStream = Files.walk(walDir)) {
+            pathStream.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testReplayAfterCheckpoint() throws Exception {
+        write("team_user.checkpoint", "2");
+        //序号 事件类型(1-加入 2-退出) 队伍id 用户id 时间，最后一行是崩溃时写了一半的事件
+        write("team_user.wal", "1,1,1,10,1000\n2,1,1,11,1000\n3,1,1,12,1000\n4,2,1,13,1000\n5,1,1");
+        writeBehind.init();
+
+        //检查点之前的事件已写入，只重放之后的事件
+        Assertions.assertEquals(Collections.singletonList("1:12"), pairs(captureInserted()));
+        ArgumentCaptor<List<TeamUser>> quitCaptor = listCaptor();
+        Mockito.verify(teamUserMapper).deleteBatchByPair(quitCaptor.capture());
+        Assertions.assertEquals(Collections.singletonList("1:13"), pairs(quitCaptor.getValue()));
+        Assertions.assertEquals("4", read("team_user.checkpoint"));
+        Assertions.assertEquals("", read("team_user.wal"));
+    }
+
+    @Test
+    void testFlushWritesCheckpoint() throws Exception {
+        writeBehind.init();
+        writeBehind.join(1, 10);
+        writeBehind.join(1, 11);
+        writeBehind.quit(1, 11);
+        //返回前已写入预写日志
+        String[] lines = read("team_user.wal").split("\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertTrue(lines[2].startsWith("3,2,1,11,"));
+
+        writeBehind.flushAll();
+        //同一个关系只按最后一个事件写入
+        Assertions.assertEquals(Collections.singletonList("1:10"), pairs(captureInserted()));
+        ArgumentCaptor<List<TeamUser>> quitCaptor = listCaptor();
+        Mockito.verify(teamUserMapper).deleteBatchByPair(quitCaptor.capture());
+        Assertions.assertEquals(Collections.singletonList("1:11"), pairs(quitCaptor.getValue()));
+        Assertions.assertEquals("3", read("team_user.checkpoint"));
+        Assertions.assertEquals("", read("team_user.wal"));
+    }
+
+    @Test
+    void testFailedFlushIsReplayed() throws Exception {
+        writeBehind.init();
+        Mockito.when(teamUserMapper.insertBatch(Mockito.anyList())).thenThrow(new IllegalStateException("mysql down"));
+        writeBehind.join(2, 20);
+        Assertions.assertThrows(IllegalStateException.class, writeBehind::flushAll);
+        //写入失败时检查点不前进，日志保留
+        Assertions.assertEquals("0", read("team_user.checkpoint"));
+        Assertions.assertTrue(read("team_user.wal").startsWith("1,1,2,20,"));
+
+        //模拟进程崩溃后重启
+        ((FileChannel) ReflectionTestUtils.getField(writeBehind, "walChannel")).close();
+        Mockito.reset(teamUserMapper);
+        Mockito.when(teamUserMapper.listByPair(Mockito.anyList())).thenReturn(Collections.emptyList());
+        writeBehind = newWriteBehind();
+        writeBehind.init();
+        Assertions.assertEquals(Collections.singletonList("2:20"), pairs(captureInserted()));
+        Assertions.assertEquals("1", read("team_user.checkpoint"));
+    }
+
+    private TeamUserWriteBehind newWriteBehind() {
+        TeamUserWriteBehind teamUserWriteBehind = new TeamUserWriteBehind();
+        ReflectionTestUtils.setField(teamUserWriteBehind, "enabled", true);
+        ReflectionTestUtils.setField(teamUserWriteBehind, "walDir", walDir.toString());
+        ReflectionTestUtils.setField(teamUserWriteBehind, "teamUserMapper", teamUserMapper);
+        ReflectionTestUtils.setField(teamUserWriteBehind, "teamSeatManager", teamSeatManager);
+        ReflectionTestUtils.setField(teamUserWriteBehind, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(teamUserWriteBehind, "transactionManager", Mockito.mock(PlatformTransactionManager.class));
+        return teamUserWriteBehind;
+    }
+
+    private List<TeamUser> captureInserted() {
+        ArgumentCaptor<List<TeamUser>> captor = listCaptor();
+        Mockito.verify(teamUserMapper).insertBatch(captor.capture());
+        return captor.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<TeamUser>> listCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private static List<String> pairs(List<TeamUser> teamUserList) {
+        List<String> pairList = new ArrayList<>();
+        for (TeamUser teamUser : teamUserList) {
+            pairList.add(teamUser.getTeamId() + ":" + teamUser.getUserId());
+        }
+        return pairList;
+    }
+
+    private void write(String fileName, String content) throws IOException {
+        Files.write(walDir.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String fileName) throws IOException {
+        return new String(Files.readAllBytes(walDir.resolve(fileName)), StandardCharsets.UTF_8);
+    }
+}
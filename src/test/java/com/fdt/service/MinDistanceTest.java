@@ -1,6 +1,7 @@
 package com.fdt.service;
 
 import com.fdt.utils.AlgorithmUtils;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
@@ -18,4 +19,32 @@ public class MinDistanceTest {
         System.out.println(AlgorithmUtils.minDistance(tagList1, tagList3));
         System.out.println(AlgorithmUtils.minDistance(tagList1, tagList4));
     }
+
+    @Test
+    void testCompareTagCodes(){
+        //Java=0 男=1 后端=2 女=3 前端=4
+        int[] tags1 = {0, 1, 2};
+        int[] tags2 = {0, 3, 4};
+        int[] tags3 = {0, 3, 2};
+        int[] tags4 = {1, 0, 2};
+        Assertions.assertEquals(2, AlgorithmUtils.minDistance(tags1, tags2));
+        Assertions.assertEquals(1, AlgorithmUtils.minDistance(tags1, tags3));
+        Assertions.assertEquals(2, AlgorithmUtils.minDistance(tags1, tags4));
+        Assertions.assertEquals(3, AlgorithmUtils.minDistance(tags1, new int[0]));
+        //较长的标签会扩容线程内的缓冲区
+        int[] longTags = new int[40];
+        Assertions.assertEquals(39, AlgorithmUtils.minDistance(new int[]{0}, longTags));
+    }
+
+    @Test
+    void testBoundedCompareTagCodes(){
+        int[] tags1 = {0, 1, 2};
+        int[] tags2 = {5, 6, 7, 8, 9};
+        Assertions.assertEquals(5, AlgorithmUtils.minDistance(tags1, tags2));
+        //未超过上限时结果与不限上限一致
+        Assertions.assertEquals(5, AlgorithmUtils.boundedMinDistance(tags1, tags2, 5));
+        //超过上限时返回上限+1
+        Assertions.assertEquals(3, AlgorithmUtils.boundedMinDistance(tags1, tags2, 2));
+        Assertions.assertEquals(1, AlgorithmUtils.boundedMinDistance(tags1, new int[0], 0));
+    }
 }
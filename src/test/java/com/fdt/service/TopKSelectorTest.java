@@ -0,0 +1,33 @@
+package com.fdt.service;
+
+import com.fdt.utils.TopKSelector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TopKSelectorTest {
+
+    @Test
+    void testSelectTopK(){
+        TopKSelector selector = new TopKSelector(3);
+        selector.offer(1, 5);
+        selector.offer(2, 1);
+        selector.offer(3, 3);
+        selector.offer(4, 1);
+        selector.offer(5, 9);
+        //分数相同时id小的在前
+        Assertions.assertArrayEquals(new long[]{2, 4, 3}, selector.sortedIds());
+        Assertions.assertArrayEquals(new long[]{1, 1, 3}, selector.sortedScores());
+        Assertions.assertEquals(3, selector.threshold());
+    }
+
+    @Test
+    void testMergeShards(){
+        TopKSelector shard1 = new TopKSelector(2);
+        shard1.offer(10, 2);
+        shard1.offer(11, 0);
+        TopKSelector shard2 = new TopKSelector(2);
+        shard2.offer(3, 2);
+        shard2.offer(4, 7);
+        Assertions.assertArrayEquals(new long[]{11, 3}, shard1.merge(shard2).sortedIds());
+    }
+}
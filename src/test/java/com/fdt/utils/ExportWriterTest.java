@@ -0,0 +1,45 @@
+package com.fdt.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+public class ExportWriterTest {
+
+    @Test
+    void testWriteCsv(){
+        StringWriter stringWriter = new StringWriter();
+        ExportWriter exportWriter = new ExportWriter(stringWriter, ExportWriter.FORMAT_CSV, "id", "username", "tags");
+        exportWriter.writeHeader();
+        exportWriter.writeRow(1L, "fdt", "[\"java\",\"go\"]");
+        exportWriter.writeRow(2L, null, "a\nb");
+        Assertions.assertEquals(2, exportWriter.finish());
+        //包含逗号、引号、换行的值用引号包起来，引号转义为两个引号
+        Assertions.assertEquals("id,username,tags\n1,fdt,\"[\"\"java\"\",\"\"go\"\"]\"\n2,,\"a\nb\"\n", stringWriter.toString());
+    }
+
+    @Test
+    void testWriteCsvFormula(){
+        StringWriter stringWriter = new StringWriter();
+        ExportWriter exportWriter = new ExportWriter(stringWriter, ExportWriter.FORMAT_CSV, "username", "tags");
+        exportWriter.writeRow("=1+1", "+cmd");
+        exportWriter.writeRow("-2", "@SUM(A1)");
+        exportWriter.writeRow("=HYPERLINK(\"x\",\"y\")", "a=b");
+        exportWriter.finish();
+        //公式开头的值前面加单引号，再按普通值转义
+        Assertions.assertEquals("'=1+1,'+cmd\n'-2,'@SUM(A1)\n\"'=HYPERLINK(\"\"x\"\",\"\"y\"\")\",a=b\n", stringWriter.toString());
+    }
+
+    @Test
+    void testWriteNdjson(){
+        StringWriter stringWriter = new StringWriter();
+        ExportWriter exportWriter = new ExportWriter(stringWriter, ExportWriter.FORMAT_NDJSON, "id", "username");
+        exportWriter.writeHeader();
+        exportWriter.writeRow(1L, "fdt");
+        exportWriter.writeRow(2L, null);
+        exportWriter.finish();
+        //数字保持数字类型，null值也写出
+        Assertions.assertEquals("{\"id\":1,\"username\":\"fdt\"}\n{\"id\":2,\"username\":null}\n", stringWriter.toString());
+    }
+}